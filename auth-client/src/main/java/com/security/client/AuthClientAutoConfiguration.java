@@ -0,0 +1,60 @@
+package com.security.client;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.util.StringUtils;
+
+/**
+ * Verificación local de los access tokens de auth-system (HS512 o ES256 vía
+ * JWKS). Solo se comprueban firma y exp: logout, cambio de contraseña,
+ * desactivación o borrado en auth-system no llegan aquí, y esos tokens se
+ * aceptan hasta su exp (15 min por defecto). Para cerrar ese hueco se define
+ * un bean TokenRevocationCheck, que recibe jti y claim ver (TokenClaims).
+ */
+@AutoConfiguration
+@EnableConfigurationProperties(AuthClientProperties.class)
+public class AuthClientAutoConfiguration {
+
+    // Bean propio para que el contexto pare su hilo de descarga (close) al cerrarse
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "auth.client", name = "jwks-uri")
+    public JwksKeyLoader jwksKeyLoader(AuthClientProperties properties) {
+        JwksKeyLoader jwksKeyLoader = new JwksKeyLoader(properties.getJwksUri(), properties.getJwksRefresh());
+        jwksKeyLoader.start();
+        return jwksKeyLoader;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TokenVerifier tokenVerifier(AuthClientProperties properties, ObjectProvider<JwksKeyLoader> jwksKeyLoader) {
+        if (!StringUtils.hasText(properties.getSecret()) && !StringUtils.hasText(properties.getJwksUri())) {
+            throw new IllegalStateException("auth.client.secret or auth.client.jwks-uri must be configured");
+        }
+
+        String secret = StringUtils.hasText(properties.getSecret()) ? properties.getSecret() : null;
+
+        return new TokenVerifier(secret, jwksKeyLoader.getIfAvailable(), properties.getCacheMaxSize());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public AuthClientFilter authClientFilter(TokenVerifier tokenVerifier,
+            ObjectProvider<TokenRevocationCheck> revocationCheck) {
+        return new AuthClientFilter(tokenVerifier, revocationCheck.getIfAvailable());
+    }
+
+    // El filtro va en la cadena de Spring Security: que Boot no lo registre además como filtro de servlet
+    @Bean
+    @ConditionalOnMissingBean(name = "authClientFilterRegistration")
+    public FilterRegistrationBean<AuthClientFilter> authClientFilterRegistration(AuthClientFilter authClientFilter) {
+        FilterRegistrationBean<AuthClientFilter> registration = new FilterRegistrationBean<>(authClientFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+}
@@ -0,0 +1,60 @@
+package com.security.client;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Autentica con los claims del JWT, sin llamar a /api/auth/me, para servicios
+ * que solo consumen los tokens. A diferencia de JwtAuthenticationFilter no
+ * conoce la lista de revocación ni la versión de seguridad de auth-system:
+ * sin TokenRevocationCheck un token revocado vale hasta su exp.
+ * Se registra en la cadena con
+ * http.addFilterBefore(authClientFilter, UsernamePasswordAuthenticationFilter.class).
+ */
+public class AuthClientFilter extends OncePerRequestFilter {
+
+    private final TokenVerifier tokenVerifier;
+    private final TokenRevocationCheck revocationCheck;
+
+    public AuthClientFilter(TokenVerifier tokenVerifier) {
+        this(tokenVerifier, null);
+    }
+
+    public AuthClientFilter(TokenVerifier tokenVerifier, TokenRevocationCheck revocationCheck) {
+        this.tokenVerifier = tokenVerifier;
+        this.revocationCheck = revocationCheck;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String bearerToken = request.getHeader("Authorization");
+
+        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
+            TokenClaims claims = tokenVerifier.verify(bearerToken.substring(7));
+            if (claims != null && revocationCheck != null && revocationCheck.isRevoked(claims)) {
+                claims = null;
+            }
+
+            if (claims != null) {
+                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                        claims, null, claims.getAuthorities());
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            } else {
+                logger.debug("JWT rejected by auth-client");
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,55 @@
+package com.security.client;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del cliente. Se usa el secreto compartido (HS512) o la URL
+ * del JWKS de auth-system (ES256); si ambos están definidos se aceptan los dos.
+ */
+@ConfigurationProperties(prefix = "auth.client")
+public class AuthClientProperties {
+
+    // Mismo valor que app.security.jwt.secret en auth-system
+    private String secret;
+
+    // Ej: https://auth.example.com/.well-known/jwks.json
+    private String jwksUri;
+
+    // Intervalo entre descargas periódicas del JWKS (ms); un kid desconocido adelanta la siguiente
+    private long jwksRefresh = 300000;
+
+    // Tokens verificados que se mantienen en memoria
+    private long cacheMaxSize = 10000;
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public String getJwksUri() {
+        return jwksUri;
+    }
+
+    public void setJwksUri(String jwksUri) {
+        this.jwksUri = jwksUri;
+    }
+
+    public long getJwksRefresh() {
+        return jwksRefresh;
+    }
+
+    public void setJwksRefresh(long jwksRefresh) {
+        this.jwksRefresh = jwksRefresh;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+}
@@ -0,0 +1,134 @@
+package com.security.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Descarga y cachea las claves públicas de /.well-known/jwks.json. Las
+ * descargas se hacen en un hilo propio, cada refreshIntervalMs; el hilo de la
+ * petición solo lee el mapa inmutable de claves. Un kid desconocido (rotación
+ * en auth-system, o un kid inventado) pide una recarga que ese hilo atiende
+ * como mucho una vez cada 5 s.
+ */
+public class JwksKeyLoader implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwksKeyLoader.class);
+
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MS = 5000;
+
+    private final URI jwksUri;
+    private final long refreshIntervalMs;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private volatile Map<String, PublicKey> keys = Collections.emptyMap();
+    private volatile long lastLoadMillis;
+    private volatile boolean reloadRequested;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jwks-key-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public JwksKeyLoader(String jwksUri, long refreshIntervalMs) {
+        this.jwksUri = URI.create(jwksUri);
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    /**
+     * Primera descarga inmediata y después las periódicas, todas en el hilo propio
+     */
+    public void start() {
+        long checkIntervalMs = Math.min(refreshIntervalMs, UNKNOWN_KID_RELOAD_INTERVAL_MS);
+        scheduler.scheduleWithFixedDelay(this::reloadIfDue, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    public PublicKey getKey(String kid) {
+        PublicKey key = keys.get(kid);
+        if (key == null) {
+            reloadRequested = true;
+        }
+        return key;
+    }
+
+    private void reloadIfDue() {
+        long sinceLastLoad = System.currentTimeMillis() - lastLoadMillis;
+        boolean due = lastLoadMillis == 0 || sinceLastLoad >= refreshIntervalMs
+                || (reloadRequested && sinceLastLoad >= UNKNOWN_KID_RELOAD_INTERVAL_MS);
+        if (!due) {
+            return;
+        }
+        reloadRequested = false;
+        lastLoadMillis = System.currentTimeMillis();
+
+        try {
+            HttpRequest request = HttpRequest.newBuilder(jwksUri)
+                    .timeout(Duration.ofSeconds(5))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                logger.warn("JWKS no disponible ({}): {}", response.statusCode(), jwksUri);
+                return;
+            }
+            keys = parse(objectMapper.readTree(response.body()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Se conservan las claves anteriores hasta la próxima recarga
+            logger.error("Error cargando JWKS de {}", jwksUri, e);
+        }
+    }
+
+    private Map<String, PublicKey> parse(JsonNode jwks) throws GeneralSecurityException {
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec("secp256r1"));
+        ECParameterSpec p256 = parameters.getParameterSpec(ECParameterSpec.class);
+        KeyFactory keyFactory = KeyFactory.getInstance("EC");
+
+        Map<String, PublicKey> loaded = new HashMap<>();
+        for (JsonNode jwk : jwks.path("keys")) {
+            if (!"EC".equals(jwk.path("kty").asText()) || !"P-256".equals(jwk.path("crv").asText())) {
+                continue;
+            }
+            ECPoint point = new ECPoint(
+                    new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("x").asText())),
+                    new BigInteger(1, Base64.getUrlDecoder().decode(jwk.path("y").asText())));
+            loaded.put(jwk.path("kid").asText(), keyFactory.generatePublic(new ECPublicKeySpec(point, p256)));
+        }
+        return Collections.unmodifiableMap(loaded);
+    }
+}
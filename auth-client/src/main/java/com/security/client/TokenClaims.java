@@ -0,0 +1,76 @@
+package com.security.client;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Claims de un access token ya verificado. Inmutable: se comparte entre
+ * peticiones desde la caché del verificador.
+ */
+public final class TokenClaims {
+
+    private final String tokenId;
+    private final Long userId;
+    private final String email;
+    private final Set<String> roles;
+    // Se construyen una vez por token, no en cada petición que lo presenta
+    private final List<GrantedAuthority> authorities;
+    private final long expiresAtMillis;
+    private final int securityVersion;
+
+    public TokenClaims(String tokenId, Long userId, String email, Set<String> roles, long expiresAtMillis,
+            int securityVersion) {
+        this.tokenId = tokenId;
+        this.userId = userId;
+        this.email = email;
+        this.roles = roles != null ? Collections.unmodifiableSet(roles) : Collections.emptySet();
+        this.authorities = toAuthorities(this.roles);
+        this.expiresAtMillis = expiresAtMillis;
+        this.securityVersion = securityVersion;
+    }
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAtMillis;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    public long getExpiresAtMillis() {
+        return expiresAtMillis;
+    }
+
+    public int getSecurityVersion() {
+        return securityVersion;
+    }
+
+    private static List<GrantedAuthority> toAuthorities(Set<String> roles) {
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+}
@@ -0,0 +1,14 @@
+package com.security.client;
+
+/**
+ * Comprobación de revocación para AuthClientFilter. Firma y exp no bastan:
+ * auth-system invalida tokens antes de su exp por logout (jti), cambio de
+ * contraseña, desactivación o borrado (claim ver, TokenClaims.getSecurityVersion).
+ * El servicio que lo necesite define un bean que lo consulte, p. ej. contra
+ * /api/auth/introspect con su propia caché corta; se llama en cada petición.
+ */
+@FunctionalInterface
+public interface TokenRevocationCheck {
+
+    boolean isRevoked(TokenClaims claims);
+}
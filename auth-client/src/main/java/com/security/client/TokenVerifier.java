@@ -0,0 +1,141 @@
+package com.security.client;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.PublicKey;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mitad de verificación de JwtTokenProvider. Un token ya verificado se sirve
+ * desde la caché, indexado por el propio String del token: en el camino
+ * caliente no se decodifica ni se vuelve a comprobar la firma. Cada entrada
+ * caduca con el exp de su token.
+ */
+public class TokenVerifier {
+
+    private static final String SECURITY_VERSION_CLAIM = "ver";
+
+    private final JwtParser jwtParser;
+    private final Cache<String, TokenClaims> cache;
+
+    public TokenVerifier(String secret, JwksKeyLoader jwksKeyLoader, long cacheMaxSize) {
+        final Key hmacKey = secret != null ? Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)) : null;
+
+        // JwtParser es inmutable y thread-safe: se construye una sola vez
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declara JwsHeader sin parametrizar en esta firma
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        if (header.getKeyId() == null) {
+                            if (hmacKey == null) {
+                                throw new io.jsonwebtoken.security.SignatureException("HS512 tokens are not accepted");
+                            }
+                            return hmacKey;
+                        }
+                        PublicKey publicKey = jwksKeyLoader != null ? jwksKeyLoader.getKey(header.getKeyId()) : null;
+                        if (publicKey == null) {
+                            throw new io.jsonwebtoken.security.SignatureException(
+                                    "Unknown JWT signing key: " + header.getKeyId());
+                        }
+                        return publicKey;
+                    }
+                })
+                .build();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new TokenExpiry())
+                .build();
+    }
+
+    /**
+     * Devuelve los claims si el token es válido y no ha expirado, o null
+     */
+    public TokenClaims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        TokenClaims cached = cache.getIfPresent(token);
+        if (cached != null) {
+            if (cached.isExpired(System.currentTimeMillis())) {
+                cache.invalidate(token);
+                return null;
+            }
+            return cached;
+        }
+
+        TokenClaims claims = parse(token);
+        if (claims != null) {
+            cache.put(token, claims);
+        }
+        return claims;
+    }
+
+    private TokenClaims parse(String token) {
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+            if (claims.getExpiration() == null) {
+                return null;
+            }
+
+            Object version = claims.get(SECURITY_VERSION_CLAIM);
+            return new TokenClaims(
+                    claims.getId(),
+                    Long.parseLong(claims.getSubject()),
+                    claims.get("email", String.class),
+                    extractRoles(claims),
+                    claims.getExpiration().getTime(),
+                    version instanceof Number ? ((Number) version).intValue() : 0);
+        } catch (JwtException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private Set<String> extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        Set<String> result = new HashSet<>();
+        if (roles instanceof Collection<?>) {
+            for (Object role : (Collection<?>) roles) {
+                result.add(String.valueOf(role));
+            }
+        }
+        return result;
+    }
+
+    // La entrada vive lo que le queda al token; leerla no la alarga
+    private static final class TokenExpiry implements Expiry<String, TokenClaims> {
+
+        @Override
+        public long expireAfterCreate(String token, TokenClaims claims, long currentTime) {
+            long remainingMs = claims.getExpiresAtMillis() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, TokenClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, TokenClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.security.client.benchmark;
+
+import com.security.client.TokenClaims;
+import com.security.client.TokenVerifier;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste por petición de AuthClientFilter con el token ya en la caché del
+ * verificador: autenticación construyendo las authorities en cada petición
+ * (como antes) frente a las precalculadas en TokenClaims, y el acierto de
+ * caché por sí solo. Con -prof gc se ven los bytes asignados por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenVerifierBenchmark {
+
+    private static final String SECRET =
+            "benchmarkSecret1234567890123456789012345678901234567890123456789012345678901234567890";
+
+    private TokenVerifier tokenVerifier;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        tokenVerifier = new TokenVerifier(SECRET, null, 10000);
+
+        token = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("42")
+                .claim("email", "bench@example.com")
+                .claim("roles", Set.of("ROLE_USER", "ROLE_ADMIN"))
+                .claim("ver", 0)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS512)
+                .compact();
+
+        // La primera verificación deja el token en la caché
+        tokenVerifier.verify(token);
+    }
+
+    @Benchmark
+    public TokenClaims verifyCached() {
+        return tokenVerifier.verify(token);
+    }
+
+    /**
+     * Lo que hacía el filtro antes: una lista y un SimpleGrantedAuthority por rol y petición
+     */
+    @Benchmark
+    public UsernamePasswordAuthenticationToken legacyAuthenticate() {
+        TokenClaims claims = tokenVerifier.verify(token);
+        List<GrantedAuthority> authorities = new ArrayList<>(claims.getRoles().size());
+        for (String role : claims.getRoles()) {
+            authorities.add(new SimpleGrantedAuthority(role));
+        }
+        return new UsernamePasswordAuthenticationToken(claims, null, authorities);
+    }
+
+    @Benchmark
+    public UsernamePasswordAuthenticationToken authenticate() {
+        TokenClaims claims = tokenVerifier.verify(token);
+        return new UsernamePasswordAuthenticationToken(claims, null, claims.getAuthorities());
+    }
+}
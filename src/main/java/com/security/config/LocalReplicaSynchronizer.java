@@ -0,0 +1,109 @@
+package com.security.config;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replicación simulada para el perfil local: copia el H2 primario (authdb) en
+ * la réplica (authdb_replica) cada sync-interval ms. El retraso que introduce
+ * es el que la ventana read-your-writes tiene que cubrir, como con MySQL.
+ */
+@Component
+@Profile("local")
+// Hibernate crea el esquema al construir el EntityManagerFactory: la primera copia va después
+@DependsOn("entityManagerFactory")
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class LocalReplicaSynchronizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalReplicaSynchronizer.class);
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private DataSource primaryDataSource;
+
+    @Value("${app.datasource.replica.url}")
+    private String replicaUrl;
+
+    @Value("${app.datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${app.datasource.replica.password:}")
+    private String replicaPassword;
+
+    private boolean schemaCreated;
+
+    @PostConstruct
+    private void initialize() throws SQLException {
+        synchronize();
+        logger.info("Réplica local sincronizada con el primario: {}", replicaUrl);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.sync-interval:1000}",
+            initialDelayString = "${app.datasource.replica.sync-interval:1000}")
+    public synchronized void synchronize() throws SQLException {
+        List<String> schema = new ArrayList<>();
+        List<String> data = new ArrayList<>();
+        List<String> tables = new ArrayList<>();
+
+        try (Connection primary = primaryDataSource.getConnection();
+                Statement statement = primary.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+                while (rs.next()) {
+                    String sql = rs.getString(1);
+                    if (sql.startsWith("INSERT INTO")) {
+                        data.add(sql);
+                    } else if (!sql.startsWith("--") && !sql.contains("FOREIGN KEY")) {
+                        // La réplica solo se lee: sin FK las tablas se rellenan en cualquier orden
+                        schema.add(sql);
+                    }
+                }
+            }
+            try (ResultSet rs = statement.executeQuery("SELECT TABLE_SCHEMA, TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                    + "WHERE TABLE_TYPE = 'BASE TABLE' AND TABLE_SCHEMA <> 'INFORMATION_SCHEMA'")) {
+                while (rs.next()) {
+                    tables.add("\"" + rs.getString(1) + "\".\"" + rs.getString(2) + "\"");
+                }
+            }
+        }
+
+        // Conexión propia, fuera del pool de solo lectura de la réplica
+        try (Connection replica = DriverManager.getConnection(replicaUrl, replicaUsername, replicaPassword);
+                Statement statement = replica.createStatement()) {
+            if (!schemaCreated) {
+                statement.execute("DROP ALL OBJECTS");
+                for (String sql : schema) {
+                    statement.execute(sql);
+                }
+                schemaCreated = true;
+            }
+
+            // Una transacción: quien lee de la réplica ve la copia anterior o la nueva, nunca media
+            replica.setAutoCommit(false);
+            for (String table : tables) {
+                statement.execute("DELETE FROM " + table);
+            }
+            for (String sql : data) {
+                statement.execute(sql);
+            }
+            replica.commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.security.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Envía las transacciones readOnly a la réplica y el resto al primario. Debe
+ * ir detrás de un LazyConnectionDataSourceProxy para que la conexión se pida
+ * cuando el flag readOnly de la transacción ya está fijado.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    public ReadWriteRoutingDataSource(ReadYourWritesTracker readYourWritesTracker) {
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWritesTracker.recordWriteOnCommit();
+            return Route.PRIMARY;
+        }
+        return readYourWritesTracker.isWithinWindow() ? Route.PRIMARY : Route.REPLICA;
+    }
+}
@@ -1,9 +1,13 @@
 package com.security.config;
 
+import com.security.security.BoundedPasswordEncoder;
 import com.security.security.CustomUserDetailsService;
 import com.security.security.JwtAuthenticationEntryPoint;
 import com.security.security.JwtAuthenticationFilter;
+import com.security.security.PasswordHashCalibrator;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -13,7 +17,9 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -22,6 +28,8 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
@@ -34,21 +42,84 @@ public class SecurityConfig {
     @Autowired
     private JwtAuthenticationEntryPoint unauthorizedHandler;
 
+    @Value("${app.security.password-hashing.threads:0}")
+    private int hashingThreads;
+
+    @Value("${app.security.password-hashing.queue-capacity:64}")
+    private int hashingQueueCapacity;
+
+    @Value("${app.security.password-hashing.timeout:5000}")
+    private long hashingTimeoutMs;
+
+    @Value("${app.security.password-hashing.retry-after:2}")
+    private int hashingRetryAfterSeconds;
+
+    // bcrypt o argon2: algoritmo de los hashes nuevos (los antiguos se siguen verificando)
+    @Value("${app.security.password-hashing.algorithm:bcrypt}")
+    private String hashingAlgorithm;
+
+    @Value("${app.security.password-hashing.latency-budget:250}")
+    private long hashingLatencyBudgetMs;
+
+    @Value("${app.security.password-hashing.bcrypt.min-strength:10}")
+    private int bcryptMinStrength;
+
+    @Value("${app.security.password-hashing.bcrypt.max-strength:14}")
+    private int bcryptMaxStrength;
+
+    @Value("${app.security.password-hashing.argon2.memory:19456}")
+    private int argon2MemoryKb;
+
+    @Value("${app.security.password-hashing.argon2.min-iterations:2}")
+    private int argon2MinIterations;
+
+    @Value("${app.security.password-hashing.argon2.max-iterations:10}")
+    private int argon2MaxIterations;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
     }
 
+    /**
+     * DelegatingPasswordEncoder con el coste calibrado para esta máquina. Los hashes
+     * antiguos sin prefijo {id} se verifican como BCrypt; upgradeEncoding() detecta
+     * los que tienen un coste o algoritmo anterior para rehashearlos en el login.
+     * Todo el hashing va a un pool acotado con rechazo inmediato (503).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry meterRegistry) {
+        boolean argon2 = "argon2".equalsIgnoreCase(hashingAlgorithm);
+
+        int bcryptStrength = argon2 ? bcryptMinStrength
+                : PasswordHashCalibrator.calibrate("bcrypt", BCryptPasswordEncoder::new,
+                        bcryptMinStrength, bcryptMaxStrength, hashingLatencyBudgetMs);
+        int argon2Iterations = !argon2 ? argon2MinIterations
+                : PasswordHashCalibrator.calibrate("argon2id", this::argon2Encoder,
+                        argon2MinIterations, argon2MaxIterations, hashingLatencyBudgetMs);
+
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", bcrypt);
+        encoders.put("argon2", argon2Encoder(argon2Iterations));
+
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(argon2 ? "argon2" : "bcrypt", encoders);
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+
+        return new BoundedPasswordEncoder(delegating, hashingThreads, hashingQueueCapacity,
+                hashingTimeoutMs, hashingRetryAfterSeconds, meterRegistry);
+    }
+
+    // Argon2id con memoria fija; lo que se calibra son las iteraciones
+    private PasswordEncoder argon2Encoder(int iterations) {
+        return new Argon2PasswordEncoder(16, 32, 1, argon2MemoryKb, iterations);
     }
 
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
         authProvider.setUserDetailsService(customUserDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 
@@ -79,7 +150,8 @@ public class SecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider)
+            throws Exception {
         http.cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(csrf -> csrf.disable())
                 .exceptionHandling(exception -> exception.authenticationEntryPoint(unauthorizedHandler))
@@ -87,7 +159,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(authz -> authz
                         // ===== ENDPOINTS PÚBLICOS =====
                         .requestMatchers("/api/auth/**").permitAll()
+                        .requestMatchers("/.well-known/jwks.json").permitAll()
                         .requestMatchers("/api/test/public").permitAll()
+                        .requestMatchers("/actuator/userstats").hasRole("ADMIN")
                         .requestMatchers("/actuator/**").permitAll()
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/swagger-ui/**").permitAll()
@@ -107,7 +181,7 @@ public class SecurityConfig {
                         // ===== TODO LO DEMÁS =====
                         .anyRequest().authenticated());
 
-        http.authenticationProvider(authenticationProvider());
+        http.authenticationProvider(authenticationProvider);
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
 
         return http.build();
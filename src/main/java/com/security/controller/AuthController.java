@@ -6,26 +6,29 @@ import com.security.dto.request.RegisterRequest;
 import com.security.dto.response.ApiResponse;
 import com.security.dto.response.JwtAuthResponse;
 import com.security.dto.response.UserResponse;
+import com.security.exception.ServiceBusyException;
+import com.security.exception.TooManyRequestsException;
 import com.security.service.AuthService;
 import com.security.service.VerificationService;
 import com.security.service.UserService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.net.URI;
 
-import com.security.entity.User;
-import org.springframework.security.crypto.password.PasswordEncoder;
-import com.security.security.JwtTokenProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
 
 import org.springframework.http.ResponseEntity;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -39,11 +42,6 @@ public class AuthController {
     private VerificationService verificationService; // ← AÑADIR ESTA INYECCIÓN}}
     @Autowired
     private UserService userService;
-    @Autowired
-    private PasswordEncoder passwordEncoder;
-
-    @Autowired
-    private JwtTokenProvider jwtTokenProvider;
 
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser(@RequestHeader("Authorization") String authHeader) {
@@ -67,6 +65,9 @@ public class AuthController {
             UserResponse user = authService.registerUser(registerRequest);
             return ResponseEntity.ok(new ApiResponse(true,
                     "User registered successfully. Please check your email to verify your account.", user));
+        } catch (ServiceBusyException e) {
+            // 503 + Retry-After en GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new ApiResponse(false, e.getMessage()));
@@ -74,35 +75,36 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request) {
         try {
-            User user = userService.findByEmail(loginRequest.getEmail()).orElse(null);
-            if (user == null || !passwordEncoder.matches(loginRequest.getPassword(), user.getPassword())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
-                        .body(new ApiResponse(false, "Credenciales inválidas"));
-            }
-
-            UserResponse userResponse = userService.convertToUserResponse(user);
+            JwtAuthResponse jwtResponse = authService.authenticateUser(loginRequest, request.getRemoteAddr());
 
             // Si el usuario tiene Google Authenticator activado, pide 2FA y NO envía el
             // token
-            if (Boolean.TRUE.equals(user.getGoogleAuthEnabled())) {
+            if (jwtResponse.isTwoFactorRequired()) {
                 Map<String, Object> data = new HashMap<>();
                 data.put("twoFactorRequired", true);
-                data.put("user", userResponse);
+                // Cualquier instancia completa el login con este challenge en /api/2fa/verify
+                data.put("challengeToken", jwtResponse.getChallengeToken());
+                data.put("user", jwtResponse.getUser());
                 return ResponseEntity.ok(new ApiResponse(true, "Two-factor authentication required", data));
             }
 
-            // Si NO tiene 2FA, genera el token y responde normalmente
-            String token = jwtTokenProvider.generateTokenFromUserId(
-                    user.getId(),
-                    user.getEmail(),
-                    user.getRoles().stream().map(role -> role.getName().name()).collect(Collectors.toSet()));
-            JwtAuthResponse jwtResponse = new JwtAuthResponse();
-            jwtResponse.setAccessToken(token);
-            jwtResponse.setTokenType("Bearer");
-            jwtResponse.setUser(userResponse);
             return ResponseEntity.ok(new ApiResponse(true, "Login successful", jwtResponse));
+        } catch (BadCredentialsException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ApiResponse(false, "Credenciales inválidas"));
+        } catch (DisabledException | LockedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ApiResponse(false, e.getMessage()));
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ApiResponse(false, e.getMessage()));
+        } catch (ServiceBusyException e) {
+            // 503 + Retry-After en GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ApiResponse(false, "Error en login: " + e.getMessage()));
@@ -110,10 +112,9 @@ public class AuthController {
     }
 
     @PostMapping("/refresh")
-    public ResponseEntity<?> refreshToken(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> body) {
         try {
-            String token = authHeader.substring(7); // Remove "Bearer " prefix
-            JwtAuthResponse jwtResponse = authService.refreshToken(token);
+            JwtAuthResponse jwtResponse = authService.refreshToken(body.get("refreshToken"));
             return ResponseEntity.ok(jwtResponse);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -121,6 +122,19 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader,
+            @RequestBody(required = false) Map<String, String> body) {
+        try {
+            String token = authHeader.replace("Bearer ", "");
+            authService.logout(token, body != null ? body.get("refreshToken") : null);
+            return ResponseEntity.ok(new ApiResponse(true, "Logout successful"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     @PostMapping("/verify-email")
     public ResponseEntity<?> verifyEmail(@RequestParam("token") String token) {
         try {
@@ -0,0 +1,83 @@
+package com.security.controller;
+
+import com.security.dto.response.ApiResponse;
+import com.security.enums.RollupDimension;
+import com.security.repository.projection.HourlyLoginOutcome;
+import com.security.repository.projection.LoginOutcomeByValue;
+import com.security.service.LoginAnalyticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Panel de seguridad: resultados de login por hora, IP y dominio de email.
+ * Rango por defecto: las últimas 24 horas; máximo 31 días.
+ */
+@RestController
+@RequestMapping("/api/admin/login-analytics")
+@PreAuthorize("hasRole('ADMIN')")
+public class LoginAnalyticsController {
+
+    @Autowired
+    private LoginAnalyticsService loginAnalyticsService;
+
+    @GetMapping("/hourly")
+    public ResponseEntity<?> hourly(@RequestParam(defaultValue = "ALL") RollupDimension dimension,
+            @RequestParam(required = false) String value,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusDays(1);
+            List<HourlyLoginOutcome> series = loginAnalyticsService.hourly(dimension, value, start, end);
+            return ResponseEntity.ok(new ApiResponse(true, "Hourly login outcomes retrieved", series));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Top-N de IPs o dominios por fallos (by=failed) o por éxitos (by=successful)
+     */
+    @GetMapping("/top")
+    public ResponseEntity<?> top(@RequestParam RollupDimension dimension,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(defaultValue = "failed") String by) {
+        try {
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusDays(1);
+            List<LoginOutcomeByValue> top = loginAnalyticsService.top(dimension, start, end, limit,
+                    !"successful".equalsIgnoreCase(by));
+            return ResponseEntity.ok(new ApiResponse(true, "Top login outcomes retrieved", top));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    @GetMapping("/totals")
+    public ResponseEntity<?> totals(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusDays(1);
+            LoginOutcomeByValue totals = loginAnalyticsService.totals(start, end);
+            return ResponseEntity.ok(new ApiResponse(true, "Login totals retrieved", totals));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.security.controller;
 
+import com.security.exception.ServiceBusyException;
 import com.security.service.PasswordResetService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -92,6 +93,9 @@ public class PasswordResetController {
                         "message", "El enlace de reset ha expirado o es inválido. Solicita uno nuevo."));
             }
 
+        } catch (ServiceBusyException e) {
+            // 503 + Retry-After en GlobalExceptionHandler
+            throw e;
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of(
                     "success", false,
@@ -0,0 +1,95 @@
+package com.security.controller;
+
+import com.security.dto.request.IntrospectRequest;
+import com.security.dto.response.ApiResponse;
+import com.security.dto.response.TokenIntrospectionResponse;
+import com.security.service.TokenIntrospectionService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/auth/introspect")
+public class TokenIntrospectionController {
+
+    // /api/auth/** es público: el cliente (gateway, nginx) se autentica con este secreto
+    private static final String CLIENT_SECRET_HEADER = "X-Introspection-Secret";
+
+    @Autowired
+    private TokenIntrospectionService introspectionService;
+
+    /**
+     * Introspección por lotes (máximo 100 tokens por petición)
+     */
+    @PostMapping
+    public ResponseEntity<?> introspect(@RequestHeader(value = CLIENT_SECRET_HEADER, required = false) String clientSecret,
+                                        @Valid @RequestBody IntrospectRequest request) {
+        if (!introspectionService.isTrustedClient(clientSecret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(new ApiResponse(false, "Introspection client not authorized"));
+        }
+
+        try {
+            List<TokenIntrospectionResponse> results = introspectionService.introspectAll(request.getTokens());
+            return ResponseEntity.ok()
+                    .cacheControl(cacheControl(results))
+                    .body(new ApiResponse(true, "Tokens introspected", results));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ApiResponse(false, "Error introspecting tokens: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Modo auth_request de nginx: 200 con cabeceras X-Auth-* si el token es
+     * válido, 401 en caso contrario. Sin cuerpo, cacheable unos segundos.
+     * Un cliente sin el secreto recibe 403 (nginx lo propaga tal cual).
+     */
+    @GetMapping
+    public ResponseEntity<Void> authRequest(@RequestHeader(value = CLIENT_SECRET_HEADER, required = false) String clientSecret,
+                                            @RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (!introspectionService.isTrustedClient(clientSecret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        String token = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        TokenIntrospectionResponse result = introspectionService.introspect(token);
+
+        if (!result.isActive()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .cacheControl(cacheControl(Collections.singletonList(result)))
+                    .varyBy("Authorization")
+                    .header("X-Auth-Status", result.getStatus().name())
+                    .build();
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(cacheControl(Collections.singletonList(result)))
+                .varyBy("Authorization")
+                .header("X-Auth-Status", result.getStatus().name())
+                .header("X-Auth-User-Id", String.valueOf(result.getSub()))
+                .header("X-Auth-Email", result.getEmail())
+                .header("X-Auth-Roles", String.join(",", result.getRoles()))
+                .build();
+    }
+
+    private CacheControl cacheControl(List<TokenIntrospectionResponse> results) {
+        long maxAge = introspectionService.getCacheMaxAge(results);
+        if (maxAge == 0) {
+            return CacheControl.noStore();
+        }
+        return CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePrivate();
+    }
+}
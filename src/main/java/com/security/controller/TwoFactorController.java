@@ -1,6 +1,5 @@
 package com.security.controller;
 
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 import com.security.dto.response.ApiResponse;
@@ -8,11 +7,17 @@ import com.security.dto.response.JwtAuthResponse;
 import com.security.dto.response.UserResponse;
 import com.security.security.JwtTokenProvider;
 import com.security.entity.User;
+import com.security.exception.TooManyRequestsException;
+import com.security.repository.projection.TwoFactorStatus;
 import com.security.security.CurrentUser;
 import com.security.security.UserPrincipal;
+import com.security.service.RefreshTokenService;
 import com.security.service.TwoFactorService;
 import com.security.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -35,6 +40,9 @@ public class TwoFactorController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     // ===== GOOGLE AUTHENTICATOR =====
 
     @PostMapping("/google/enable")
@@ -68,48 +76,31 @@ public class TwoFactorController {
     // ===== VERIFICACIÓN UNIVERSAL 2FA =====
 
     @PostMapping("/send-login-code")
-    public ResponseEntity<?> sendLoginCode(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> sendLoginCode(@RequestBody Map<String, String> request,
+            HttpServletRequest httpRequest) {
         try {
-            String email = request.get("email");
             String method = request.get("method");
+            String challengeToken = request.get("challengeToken");
 
-            if (email == null || method == null) {
+            // Solo con el challenge del login: el código viaja ligado en él, sin estado en el servidor
+            if (challengeToken == null || method == null) {
                 return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false, "Email and method are required"));
+                        .body(new ApiResponse(false, "Challenge token and method are required"));
             }
 
-            // Buscar usuario por email
-            Optional<User> userOptional = userService.findByEmail(email);
-            if (!userOptional.isPresent()) {
-                return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false, "User not found"));
-            }
-
-            User user = userOptional.get();
-
-            if ("SMS".equals(method)) {
-                if (user.getSmsEnabled() == null || !user.getSmsEnabled()) {
-                    return ResponseEntity.badRequest()
-                            .body(new ApiResponse(false, "SMS 2FA is not enabled for this user"));
-                }
-                twoFactorService.sendSmsCode(user.getId());
-                return ResponseEntity.ok(new ApiResponse(true, "SMS code sent successfully"));
-            } else if ("EMAIL".equals(method)) {
-                if (user.getEmailEnabled() == null || !user.getEmailEnabled()) {
-                    return ResponseEntity.badRequest()
-                            .body(new ApiResponse(false, "Email 2FA is not enabled for this user"));
-                }
-                twoFactorService.sendEmailCode(user.getId());
-                return ResponseEntity.ok(new ApiResponse(true, "Email code sent successfully"));
-            } else {
-                return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false, "Invalid method. Supported: SMS, EMAIL"));
-            }
+            String boundChallenge = twoFactorService.sendChallengeCode(challengeToken, method,
+                    httpRequest.getRemoteAddr());
+            return ResponseEntity.ok(new ApiResponse(true, method + " code sent successfully",
+                    Map.of("challengeToken", boundChallenge)));
 
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ApiResponse(false, e.getMessage()));
         } catch (Exception e) {
             // Manejo específico para errores de email
-            if (e.getMessage().contains("Connection timed out") ||
-                    e.getMessage().contains("Mail server connection failed")) {
+            if (e.getMessage() != null && (e.getMessage().contains("Connection timed out") ||
+                    e.getMessage().contains("Mail server connection failed"))) {
                 return ResponseEntity.status(503)
                         .body(new ApiResponse(false,
                                 "Error al enviar código 2FA por email. El servidor de correo no está disponible. Por favor, usa SMS como alternativa."));
@@ -120,77 +111,63 @@ public class TwoFactorController {
     }
 
     @PostMapping("/verify")
-    public ResponseEntity<?> verifyTwoFactor(@RequestBody Map<String, String> request) {
+    public ResponseEntity<?> verifyTwoFactor(@RequestBody Map<String, String> request,
+            HttpServletRequest httpRequest) {
         try {
-            String email = request.get("email");
             String code = request.get("code");
             String method = request.get("method");
+            String challengeToken = request.get("challengeToken");
 
-            if (email == null || code == null || method == null) {
-                return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false, "Email, code and method are required"));
-            }
-
-            // Buscar usuario por email
-            Optional<User> userOptional = userService.findByEmail(email);
-            if (!userOptional.isPresent()) {
+            // Sin challenge no hay verificación: el email solo no prueba que se pasó la contraseña
+            if (challengeToken == null || code == null) {
                 return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false, "User not found"));
+                        .body(new ApiResponse(false, "Challenge token and code are required"));
             }
 
-            User user = userOptional.get();
-            boolean isValid = false;
-
-            if ("GOOGLE_AUTHENTICATOR".equals(method)) {
-                // CORREGIDO: Usar el método que existe en TwoFactorService
-                isValid = twoFactorService.confirmGoogleAuthenticator(user.getId(), code);
-            } else if ("EMAIL".equals(method)) {
-                // CORREGIDO: Usar el método que existe en TwoFactorService
-                isValid = twoFactorService.verifyEmailCode(user.getId(), code);
-            } else if ("SMS".equals(method)) {
-                // NUEVO: Verificación por SMS
-                isValid = twoFactorService.verifySmsCode(user.getId(), code);
-            } else {
-                return ResponseEntity.badRequest()
-                        .body(new ApiResponse(false,
-                                "Invalid verification method. Supported: GOOGLE_AUTHENTICATOR, EMAIL, SMS"));
-            }
-
-            if (isValid) {
-                // CORREGIDO: Crear UserPrincipal y Authentication
-                UserPrincipal userPrincipal = UserPrincipal.create(user);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userPrincipal, null, userPrincipal.getAuthorities());
-                String token = jwtTokenProvider.generateToken(authentication);
-
-                // Crear respuesta con token
-                JwtAuthResponse jwtResponse = new JwtAuthResponse();
-                jwtResponse.setAccessToken(token);
-                jwtResponse.setTokenType("Bearer");
-                jwtResponse.setExpiresIn(86400L);
-
-                UserResponse userResponse = new UserResponse();
-                userResponse.setId(user.getId());
-                userResponse.setEmail(user.getEmail());
-                userResponse.setFirstName(user.getFirstName());
-                userResponse.setLastName(user.getLastName());
-                userResponse.setTwoFactorEnabled(user.getTwoFactorEnabled());
-
-                jwtResponse.setUser(userResponse);
-                jwtResponse.setTwoFactorRequired(false);
-
-                return ResponseEntity.ok(new ApiResponse(true,
-                        "Two-factor authentication successful", jwtResponse));
-            } else {
+            User user = twoFactorService.verifyChallenge(challengeToken, method, code,
+                    httpRequest.getRemoteAddr());
+            if (user == null) {
                 return ResponseEntity.badRequest()
                         .body(new ApiResponse(false, "Invalid verification code"));
             }
+            return ResponseEntity.ok(new ApiResponse(true,
+                    "Two-factor authentication successful", twoFactorLoginResponse(user)));
 
+        } catch (TooManyRequestsException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ApiResponse(false, e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest()
                     .body(new ApiResponse(false, e.getMessage()));
         }
     }
+
+    // Segundo factor correcto: se emiten los tokens como en un login sin 2FA
+    private JwtAuthResponse twoFactorLoginResponse(User user) {
+        UserPrincipal userPrincipal = UserPrincipal.create(user);
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                userPrincipal, null, userPrincipal.getAuthorities());
+        String token = jwtTokenProvider.generateToken(authentication);
+
+        // Crear respuesta con token
+        JwtAuthResponse jwtResponse = new JwtAuthResponse();
+        jwtResponse.setAccessToken(token);
+        jwtResponse.setRefreshToken(refreshTokenService.createRefreshToken(user));
+        jwtResponse.setTokenType("Bearer");
+        jwtResponse.setExpiresIn(jwtTokenProvider.getExpirationTime());
+
+        UserResponse userResponse = new UserResponse();
+        userResponse.setId(user.getId());
+        userResponse.setEmail(user.getEmail());
+        userResponse.setFirstName(user.getFirstName());
+        userResponse.setLastName(user.getLastName());
+        userResponse.setTwoFactorEnabled(user.getTwoFactorEnabled());
+
+        jwtResponse.setUser(userResponse);
+        jwtResponse.setTwoFactorRequired(false);
+        return jwtResponse;
+    }
     /////////////////////////////////////////////////
 
     @PostMapping("/google/confirm")
@@ -386,12 +363,12 @@ public class TwoFactorController {
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<?> getTwoFactorStatus(@CurrentUser UserPrincipal userPrincipal) {
         try {
-            User user = userService.getUserById(userPrincipal.getId());
+            TwoFactorStatus twoFactorStatus = userService.getTwoFactorStatus(userPrincipal.getId());
 
             Map<String, Object> status = new HashMap<>();
-            status.put("enabled", user.getTwoFactorEnabled() != null ? user.getTwoFactorEnabled() : false);
-            status.put("type", user.getTwoFactorType() != null ? user.getTwoFactorType().toString() : "none");
-            status.put("hasSecret", user.getTwoFactorSecret() != null);
+            status.put("enabled", twoFactorStatus.twoFactorEnabled() != null ? twoFactorStatus.twoFactorEnabled() : false);
+            status.put("type", twoFactorStatus.twoFactorType() != null ? twoFactorStatus.twoFactorType().toString() : "none");
+            status.put("hasSecret", twoFactorStatus.hasSecret());
 
             return ResponseEntity.ok(new ApiResponse(true,
                     "Two-factor status retrieved", status));
@@ -0,0 +1,98 @@
+package com.security.controller;
+
+import com.security.dto.request.UserFilterRequest;
+import com.security.dto.response.ApiResponse;
+import com.security.dto.response.CursorPage;
+import com.security.dto.response.LoginAttemptResponse;
+import com.security.dto.response.UserResponse;
+import com.security.dto.response.UserSearchResult;
+import com.security.service.LoginAttemptRecorder;
+import com.security.service.UserSearchService;
+import com.security.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/users")
+@PreAuthorize("hasRole('ADMIN')")
+public class UserAdminController {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private LoginAttemptRecorder loginAttemptRecorder;
+
+    /**
+     * Búsqueda por prefijo en email y nombre, ordenada por relevancia
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchUsers(@RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size) {
+        try {
+            Page<UserSearchResult> results = userSearchService.search(query, page, size);
+            return ResponseEntity.ok(new ApiResponse(true, "Search completed", results));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Type-ahead para el buscador del panel de administración
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<?> suggestUsers(@RequestParam("q") String query,
+            @RequestParam(defaultValue = "10") int limit) {
+        try {
+            List<UserSearchResult> results = userSearchService.suggest(query, limit);
+            return ResponseEntity.ok(new ApiResponse(true, "Suggestions retrieved", results));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Últimos intentos de login de un email (buffer en memoria, o BD si no está)
+     */
+    @GetMapping("/login-attempts")
+    public ResponseEntity<?> recentLoginAttempts(@RequestParam("email") String email) {
+        try {
+            List<LoginAttemptResponse> attempts = loginAttemptRecorder.recentAttempts(email);
+            return ResponseEntity.ok(new ApiResponse(true, "Login attempts retrieved", attempts));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Listado paginado por cursor. Filtros opcionales: enabled, twoFactorType,
+     * role, createdFrom, createdTo (ISO-8601); cursor y size para paginar.
+     * Con rango de fechas el orden es por fecha de alta (y id) descendente.
+     */
+    @GetMapping
+    public ResponseEntity<?> listUsers(@ModelAttribute UserFilterRequest filter) {
+        try {
+            CursorPage<UserResponse> page = userService.listUsers(filter);
+            return ResponseEntity.ok(new ApiResponse(true, "Users retrieved", page));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+}
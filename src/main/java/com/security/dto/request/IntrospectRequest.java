@@ -0,0 +1,30 @@
+package com.security.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class IntrospectRequest {
+
+    @NotEmpty(message = "At least one token is required")
+    @Size(max = 100, message = "A maximum of 100 tokens can be introspected per request")
+    private List<String> tokens;
+
+    // Constructors
+    public IntrospectRequest() {
+    }
+
+    public IntrospectRequest(List<String> tokens) {
+        this.tokens = tokens;
+    }
+
+    // Getters and Setters
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
@@ -6,11 +6,13 @@ import java.util.Set;
 public class JwtAuthResponse {
 
     private String accessToken;
+    private String refreshToken;
     private String tokenType = "Bearer";
     private Long expiresIn;
     private LocalDateTime expiresAt;
     private UserResponse user;
     private boolean twoFactorRequired = false;
+    private String challengeToken;
 
     // Constructors
     public JwtAuthResponse() {
@@ -32,6 +34,14 @@ public class JwtAuthResponse {
         this.accessToken = accessToken;
     }
 
+    public String getRefreshToken() {
+        return refreshToken;
+    }
+
+    public void setRefreshToken(String refreshToken) {
+        this.refreshToken = refreshToken;
+    }
+
     public String getTokenType() {
         return tokenType;
     }
@@ -71,4 +81,12 @@ public class JwtAuthResponse {
     public void setTwoFactorRequired(boolean twoFactorRequired) {
         this.twoFactorRequired = twoFactorRequired;
     }
+
+    public String getChallengeToken() {
+        return challengeToken;
+    }
+
+    public void setChallengeToken(String challengeToken) {
+        this.challengeToken = challengeToken;
+    }
 }
@@ -0,0 +1,65 @@
+package com.security.dto.response;
+
+import java.time.LocalDateTime;
+
+public class LoginAttemptResponse {
+
+    private String email;
+    private String ipAddress;
+    private boolean successful;
+    private String failureReason;
+    private LocalDateTime attemptTime;
+
+    public LoginAttemptResponse() {
+    }
+
+    public LoginAttemptResponse(String email, String ipAddress, boolean successful, String failureReason,
+            LocalDateTime attemptTime) {
+        this.email = email;
+        this.ipAddress = ipAddress;
+        this.successful = successful;
+        this.failureReason = failureReason;
+        this.attemptTime = attemptTime;
+    }
+
+    // Getters and Setters
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public void setIpAddress(String ipAddress) {
+        this.ipAddress = ipAddress;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public void setSuccessful(boolean successful) {
+        this.successful = successful;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
+
+    public LocalDateTime getAttemptTime() {
+        return attemptTime;
+    }
+
+    public void setAttemptTime(LocalDateTime attemptTime) {
+        this.attemptTime = attemptTime;
+    }
+}
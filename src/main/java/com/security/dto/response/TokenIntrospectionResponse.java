@@ -0,0 +1,80 @@
+package com.security.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Set;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIntrospectionResponse {
+
+    public enum Status {
+        ACTIVE,
+        EXPIRED,
+        REVOKED,
+        INVALID
+    }
+
+    private boolean active;
+    private Status status;
+    private Long sub;
+    private String email;
+    private Set<String> roles;
+    private Long exp;
+
+    public TokenIntrospectionResponse() {
+    }
+
+    public TokenIntrospectionResponse(Status status) {
+        this.status = status;
+        this.active = status == Status.ACTIVE;
+    }
+
+    // Getters and Setters
+    public boolean isActive() {
+        return active;
+    }
+
+    public void setActive(boolean active) {
+        this.active = active;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getSub() {
+        return sub;
+    }
+
+    public void setSub(Long sub) {
+        this.sub = sub;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public void setRoles(Set<String> roles) {
+        this.roles = roles;
+    }
+
+    public Long getExp() {
+        return exp;
+    }
+
+    public void setExp(Long exp) {
+        this.exp = exp;
+    }
+}
@@ -6,7 +6,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "active_sessions")
+@Table(name = "active_sessions", indexes = {
+        @Index(name = "idx_active_sessions_jwt_token_id", columnList = "jwt_token_id"),
+        @Index(name = "idx_active_sessions_revoked_created_at", columnList = "revoked, created_at")
+})
 public class ActiveSession {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,48 @@
+package com.security.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lápida de un usuario eliminado: las demás instancias la leen al sincronizar
+ * SecurityVersionTable y rechazan sus JWT aún vigentes en modo claims-only.
+ */
+@Entity
+@Table(name = "deleted_users", indexes = {
+        @Index(name = "idx_deleted_users_deleted_at", columnList = "deleted_at")
+})
+public class DeletedUser {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    // Constructors
+    public DeletedUser() {
+    }
+
+    public DeletedUser(Long userId, LocalDateTime deletedAt) {
+        this.userId = userId;
+        this.deletedAt = deletedAt;
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(LocalDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+}
@@ -5,7 +5,12 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "login_attempts")
+@Table(name = "login_attempts", indexes = {
+        // Purga por rango de tiempo y consultas "recientes" por email / IP
+        @Index(name = "idx_login_attempts_attempt_time", columnList = "attempt_time"),
+        @Index(name = "idx_login_attempts_email_time", columnList = "email, attempt_time"),
+        @Index(name = "idx_login_attempts_ip_time", columnList = "ip_address, attempt_time")
+})
 public class LoginAttempt {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,96 @@
+package com.security.entity;
+
+import com.security.enums.RollupDimension;
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Resultados de login agregados por hora y dimensión (total, IP o dominio del
+ * email). Se actualiza en cada flush de LoginAttemptRecorder, así que las
+ * consultas del panel no recorren login_attempts.
+ */
+@Entity
+@Table(name = "login_attempt_rollups", uniqueConstraints = @UniqueConstraint(name = "uk_login_attempt_rollups_bucket",
+        columnNames = { "dimension", "dimension_value", "bucket_start" }), indexes = {
+                // Top-N de una dimensión en un rango de horas
+                @Index(name = "idx_login_attempt_rollups_dimension_bucket", columnList = "dimension, bucket_start"),
+                // Purga de retención por rango de horas
+                @Index(name = "idx_login_attempt_rollups_bucket_start", columnList = "bucket_start")
+        })
+public class LoginAttemptRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Inicio de la hora (minutos y segundos a cero)
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private RollupDimension dimension;
+
+    // IP o dominio; cadena vacía para ALL
+    @Column(name = "dimension_value", nullable = false, length = 100)
+    private String dimensionValue;
+
+    @Column(nullable = false)
+    private long successful;
+
+    @Column(nullable = false)
+    private long failed;
+
+    // Constructors
+    public LoginAttemptRollup() {
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public RollupDimension getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(RollupDimension dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getDimensionValue() {
+        return dimensionValue;
+    }
+
+    public void setDimensionValue(String dimensionValue) {
+        this.dimensionValue = dimensionValue;
+    }
+
+    public long getSuccessful() {
+        return successful;
+    }
+
+    public void setSuccessful(long successful) {
+        this.successful = successful;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+}
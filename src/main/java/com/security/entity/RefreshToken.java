@@ -6,15 +6,26 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_tokens_family_id", columnList = "family_id")
+})
 public class RefreshToken {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(nullable = false, unique = true)
+    // SHA-256 (hex) del token opaco; el valor en claro nunca se guarda
+    @Column(nullable = false, unique = true, length = 64)
     private String token;
 
+    // Todos los tokens obtenidos por rotación a partir del mismo login
+    @Column(name = "family_id", nullable = false, length = 36)
+    private String familyId;
+
+    // true cuando ya se usó para rotar; si vuelve a presentarse es una reutilización
+    @Column(nullable = false)
+    private Boolean revoked = false;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -36,6 +47,13 @@ public class RefreshToken {
         this.expiryDate = expiryDate;
     }
 
+    public RefreshToken(String token, User user, String familyId, LocalDateTime expiryDate) {
+        this.token = token;
+        this.user = user;
+        this.familyId = familyId;
+        this.expiryDate = expiryDate;
+    }
+
     // Getters and Setters
     public Long getId() {
         return id;
@@ -53,6 +71,22 @@ public class RefreshToken {
         this.token = token;
     }
 
+    public String getFamilyId() {
+        return familyId;
+    }
+
+    public void setFamilyId(String familyId) {
+        this.familyId = familyId;
+    }
+
+    public Boolean getRevoked() {
+        return revoked;
+    }
+
+    public void setRevoked(Boolean revoked) {
+        this.revoked = revoked;
+    }
+
     public User getUser() {
         return user;
     }
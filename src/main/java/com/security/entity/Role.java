@@ -2,6 +2,8 @@ package com.security.entity;
 
 import com.security.enums.RoleName;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -11,6 +13,9 @@ import java.util.Set;
 
 @Entity
 @Table(name = "roles")
+// Los roles no cambian en ejecución: se sirven desde la caché de segundo nivel
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "roles")
 public class Role {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -6,7 +6,9 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "two_factor_tokens")
+@Table(name = "two_factor_tokens", indexes = {
+        @Index(name = "idx_two_factor_tokens_used_used_at", columnList = "used, used_at")
+})
 public class TwoFactorToken {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
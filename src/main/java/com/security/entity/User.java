@@ -5,17 +5,32 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import com.security.enums.TwoFactorType;
+import com.security.service.UserStatisticsListener;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // Listado de administración por keyset: filtro + id en el mismo índice
+        @Index(name = "idx_users_enabled_id", columnList = "enabled, id"),
+        @Index(name = "idx_users_two_factor_type_id", columnList = "two_factor_type, id"),
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id")
+})
+@EntityListeners(UserStatisticsListener.class)
+// Caché de segundo nivel: login y verificación de tokens cargan los mismos usuarios una y otra vez
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users")
+@NaturalIdCache(region = "users-by-email")
 public class User {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -34,6 +49,7 @@ public class User {
     @NotBlank
     @Email
     @Size(max = 100)
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String email;
 
@@ -60,9 +76,18 @@ public class User {
     @Column(name = "account_non_locked", nullable = false)
     private Boolean accountNonLocked = true;
 
+    // Momento del bloqueo por intentos fallidos; null si el bloqueo es manual
+    @Column(name = "locked_at")
+    private LocalDateTime lockedAt;
+
     @Column(name = "credentials_non_expired", nullable = false)
     private Boolean credentialsNonExpired = true;
 
+    // Se incrementa cuando hay que invalidar los JWT ya emitidos
+    // (contraseña cambiada, cuenta deshabilitada o bloqueada)
+    @Column(name = "security_version")
+    private Integer securityVersion = 0;
+
     // nueva
     @Column(name = "google_auth_secret")
     private String googleAuthSecret;
@@ -84,8 +109,11 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @ManyToMany(fetch = FetchType.EAGER)
-    @JoinTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "role_id"))
+    // LAZY: quien necesite los roles usa los métodos WithRoles del repositorio (colección cacheada)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "users.roles")
+    @JoinTable(name = "user_roles", joinColumns = @JoinColumn(name = "user_id"), inverseJoinColumns = @JoinColumn(name = "role_id"),
+            indexes = @Index(name = "idx_user_roles_role_id_user_id", columnList = "role_id, user_id"))
     private Set<Role> roles = new HashSet<>();
 
     @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
@@ -104,6 +132,10 @@ public class User {
     @Column(name = "two_factor_type", length = 50)
     private TwoFactorType twoFactorType;
 
+    // Estado contado en UserStatistics tal como se cargó de la BD (ver UserStatisticsListener)
+    @Transient
+    private transient UserStatisticsListener.Snapshot statisticsSnapshot;
+
     /******************************
      *
      * 
@@ -289,6 +321,14 @@ public class User {
         this.accountNonLocked = accountNonLocked;
     }
 
+    public LocalDateTime getLockedAt() {
+        return lockedAt;
+    }
+
+    public void setLockedAt(LocalDateTime lockedAt) {
+        this.lockedAt = lockedAt;
+    }
+
     public Boolean getCredentialsNonExpired() {
         return credentialsNonExpired;
     }
@@ -297,6 +337,14 @@ public class User {
         this.credentialsNonExpired = credentialsNonExpired;
     }
 
+    public Integer getSecurityVersion() {
+        return securityVersion != null ? securityVersion : 0;
+    }
+
+    public void setSecurityVersion(Integer securityVersion) {
+        this.securityVersion = securityVersion;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -353,7 +401,20 @@ public class User {
         this.activeSessions = activeSessions;
     }
 
+    public UserStatisticsListener.Snapshot getStatisticsSnapshot() {
+        return statisticsSnapshot;
+    }
+
+    public void setStatisticsSnapshot(UserStatisticsListener.Snapshot statisticsSnapshot) {
+        this.statisticsSnapshot = statisticsSnapshot;
+    }
+
     // Helper methods
+    public int bumpSecurityVersion() {
+        this.securityVersion = getSecurityVersion() + 1;
+        return this.securityVersion;
+    }
+
     public String getFullName() {
         return firstName + " " + lastName;
     }
@@ -0,0 +1,7 @@
+package com.security.enums;
+
+public enum RollupDimension {
+    ALL,
+    IP,
+    EMAIL_DOMAIN
+}
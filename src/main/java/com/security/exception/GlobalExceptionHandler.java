@@ -0,0 +1,25 @@
+package com.security.exception;
+
+import com.security.dto.response.ApiResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Respuestas comunes a todos los controladores para excepciones que no
+ * depende de cada endpoint traducir.
+ */
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    // Pool de hashing saturado (BoundedPasswordEncoder) en cualquier encode/matches:
+    // 503 con Retry-After para que el cliente reintente, nunca un 500
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<ApiResponse> handleServiceBusy(ServiceBusyException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ApiResponse(false, e.getMessage()));
+    }
+}
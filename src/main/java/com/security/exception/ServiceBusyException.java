@@ -0,0 +1,19 @@
+package com.security.exception;
+
+/**
+ * El servidor no puede atender la petición ahora mismo (cola llena); el cliente
+ * debe reintentar pasados retryAfterSeconds. Se responde con 503 + Retry-After.
+ */
+public class ServiceBusyException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public ServiceBusyException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -2,6 +2,7 @@ package com.security.repository;
 
 import com.security.entity.ActiveSession;
 import com.security.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -51,6 +52,10 @@ public interface ActiveSessionRepository extends JpaRepository<ActiveSession, Lo
     @Query("DELETE FROM ActiveSession ase WHERE ase.revoked = true AND ase.createdAt < :cutoffDate")
     void deleteOldRevokedSessions(@Param("cutoffDate") LocalDateTime cutoffDate);
 
+    // Purga por lotes (RetentionPurgeService): ids de sesiones revocadas antiguas
+    @Query("SELECT ase.id FROM ActiveSession ase WHERE ase.revoked = true AND ase.createdAt < :cutoffDate ORDER BY ase.createdAt")
+    List<Long> findOldRevokedSessionIds(@Param("cutoffDate") LocalDateTime cutoffDate, Pageable pageable);
+
     // Contar sesiones activas
     @Query("SELECT COUNT(ase) FROM ActiveSession ase WHERE ase.user.id = :userId AND ase.revoked = false AND ase.expiresAt > :currentTime")
     long countActiveSessionsByUserId(@Param("userId") Long userId, @Param("currentTime") LocalDateTime currentTime);
@@ -59,6 +64,10 @@ public interface ActiveSessionRepository extends JpaRepository<ActiveSession, Lo
     @Query("SELECT CASE WHEN COUNT(ase) > 0 THEN true ELSE false END FROM ActiveSession ase WHERE ase.jwtTokenId = :tokenId AND ase.revoked = true")
     boolean isTokenRevoked(@Param("tokenId") String tokenId);
 
+    // jti de tokens revocados que aún no han expirado (para la lista de revocación en memoria)
+    @Query("SELECT ase.jwtTokenId, ase.expiresAt FROM ActiveSession ase WHERE ase.revoked = true AND ase.expiresAt > :currentTime")
+    List<Object[]> findRevokedTokenIds(@Param("currentTime") LocalDateTime currentTime);
+
     // Sesiones recientes
     @Query("SELECT ase FROM ActiveSession ase WHERE ase.user = :user ORDER BY ase.createdAt DESC")
     List<ActiveSession> findRecentSessionsByUser(@Param("user") User user);
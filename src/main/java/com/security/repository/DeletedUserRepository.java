@@ -0,0 +1,23 @@
+package com.security.repository;
+
+import com.security.entity.DeletedUser;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DeletedUserRepository extends JpaRepository<DeletedUser, Long> {
+
+    // Usuarios eliminados cuyos tokens aún podrían estar vigentes
+    @Query("SELECT du.userId FROM DeletedUser du WHERE du.deletedAt >= :since")
+    List<Long> findUserIdsDeletedSince(@Param("since") LocalDateTime since);
+
+    // Purga por lotes (RetentionPurgeService)
+    @Query("SELECT du.userId FROM DeletedUser du WHERE du.deletedAt < :cutoff ORDER BY du.deletedAt")
+    List<Long> findIdsByDeletedAtBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
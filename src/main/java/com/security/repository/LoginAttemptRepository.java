@@ -1,7 +1,9 @@
 package com.security.repository;
 
 import com.security.entity.LoginAttempt;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -39,9 +41,9 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
     // Intentos exitosos
     List<LoginAttempt> findByEmailAndSuccessfulTrue(String email);
 
-    // Últimos intentos
+    // Últimos intentos (limitados por el Pageable)
     @Query("SELECT la FROM LoginAttempt la WHERE la.email = :email ORDER BY la.attemptTime DESC")
-    List<LoginAttempt> findRecentAttemptsByEmail(@Param("email") String email);
+    List<LoginAttempt> findRecentAttemptsByEmail(@Param("email") String email, Pageable pageable);
 
     // Estadísticas por rango de fechas
     @Query("SELECT COUNT(la) FROM LoginAttempt la WHERE la.attemptTime BETWEEN :startDate AND :endDate AND la.successful = :successful")
@@ -49,6 +51,12 @@ public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long
             @Param("endDate") LocalDateTime endDate,
             @Param("successful") Boolean successful);
 
-    // Limpiar intentos antiguos
-    void deleteByAttemptTimeBefore(LocalDateTime cutoffDate);
+    // Limpiar intentos antiguos: DELETE masivo, sin cargar las entidades una a una
+    @Modifying
+    @Query("DELETE FROM LoginAttempt la WHERE la.attemptTime < :cutoffDate")
+    int deleteByAttemptTimeBefore(@Param("cutoffDate") LocalDateTime cutoffDate);
+
+    // Purga por lotes (RetentionPurgeService): ids del rango, por el índice de attempt_time
+    @Query("SELECT la.id FROM LoginAttempt la WHERE la.attemptTime < :cutoffDate ORDER BY la.attemptTime")
+    List<Long> findIdsByAttemptTimeBefore(@Param("cutoffDate") LocalDateTime cutoffDate, Pageable pageable);
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.security.repository;
+
+import com.security.entity.LoginAttemptRollup;
+import com.security.enums.RollupDimension;
+import com.security.repository.projection.HourlyLoginOutcome;
+import com.security.repository.projection.LoginOutcomeByValue;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface LoginAttemptRollupRepository extends JpaRepository<LoginAttemptRollup, Long> {
+
+    // Serie horaria de un valor de una dimensión (ALL con valor "")
+    @Query("SELECT new com.security.repository.projection.HourlyLoginOutcome(r.bucketStart, r.successful, r.failed) "
+            + "FROM LoginAttemptRollup r WHERE r.dimension = :dimension AND r.dimensionValue = :value "
+            + "AND r.bucketStart >= :from AND r.bucketStart < :to ORDER BY r.bucketStart")
+    List<HourlyLoginOutcome> findHourly(@Param("dimension") RollupDimension dimension, @Param("value") String value,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Top-N por fallos en el rango
+    @Query("SELECT new com.security.repository.projection.LoginOutcomeByValue(r.dimensionValue, SUM(r.successful), "
+            + "SUM(r.failed)) FROM LoginAttemptRollup r WHERE r.dimension = :dimension "
+            + "AND r.bucketStart >= :from AND r.bucketStart < :to "
+            + "GROUP BY r.dimensionValue ORDER BY SUM(r.failed) DESC")
+    List<LoginOutcomeByValue> findTopByFailed(@Param("dimension") RollupDimension dimension,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+
+    // Top-N por éxitos en el rango
+    @Query("SELECT new com.security.repository.projection.LoginOutcomeByValue(r.dimensionValue, SUM(r.successful), "
+            + "SUM(r.failed)) FROM LoginAttemptRollup r WHERE r.dimension = :dimension "
+            + "AND r.bucketStart >= :from AND r.bucketStart < :to "
+            + "GROUP BY r.dimensionValue ORDER BY SUM(r.successful) DESC")
+    List<LoginOutcomeByValue> findTopBySuccessful(@Param("dimension") RollupDimension dimension,
+            @Param("from") LocalDateTime from, @Param("to") LocalDateTime to, Pageable pageable);
+
+    // Purga por lotes (RetentionPurgeService)
+    @Query("SELECT r.id FROM LoginAttemptRollup r WHERE r.bucketStart < :cutoff ORDER BY r.bucketStart")
+    List<Long> findIdsByBucketStartBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+}
@@ -18,6 +18,15 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     // Búsqueda por token
     Optional<RefreshToken> findByToken(String token);
 
+    // Búsqueda por hash con el usuario y sus roles en una sola consulta (rotación)
+    @Query("SELECT rt FROM RefreshToken rt JOIN FETCH rt.user u LEFT JOIN FETCH u.roles WHERE rt.token = :tokenHash")
+    Optional<RefreshToken> findByTokenHashWithUser(@Param("tokenHash") String tokenHash);
+
+    // Consume el token solo si nadie lo ha hecho antes: 0 filas = reutilización (también concurrente)
+    @Modifying
+    @Query("UPDATE RefreshToken rt SET rt.revoked = true WHERE rt.id = :id AND rt.revoked = false")
+    int markRevokedIfActive(@Param("id") Long id);
+
     // Búsqueda por usuario
     List<RefreshToken> findByUser(User user);
 
@@ -37,6 +46,11 @@ public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long
     @Query("DELETE FROM RefreshToken rt WHERE rt.user.id = :userId")
     void deleteByUserId(@Param("userId") Long userId);
 
+    // Eliminación de toda una familia (reutilización detectada o logout)
+    @Modifying
+    @Query("DELETE FROM RefreshToken rt WHERE rt.familyId = :familyId")
+    void deleteByFamilyId(@Param("familyId") String familyId);
+
     // Limpieza de tokens expirados
     @Modifying
     @Query("DELETE FROM RefreshToken rt WHERE rt.expiryDate < :currentTime")
@@ -0,0 +1,27 @@
+package com.security.repository;
+
+import com.security.entity.SigningKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SigningKeyRepository extends JpaRepository<SigningKey, Long> {
+
+    // Claves que todavía pueden verificar tokens, la más reciente primero
+    @Query("SELECT sk FROM SigningKey sk WHERE sk.algorithm = :algorithm AND sk.expiresAt > :currentTime ORDER BY sk.createdAt DESC")
+    List<SigningKey> findUsableKeys(@Param("algorithm") String algorithm,
+            @Param("currentTime") LocalDateTime currentTime);
+
+    // Eliminar claves que ya no pueden verificar ningún token
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM SigningKey sk WHERE sk.expiresAt < :currentTime")
+    void deleteExpiredKeys(@Param("currentTime") LocalDateTime currentTime);
+}
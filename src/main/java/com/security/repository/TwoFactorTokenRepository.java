@@ -2,6 +2,7 @@ package com.security.repository;
 
 import com.security.entity.TwoFactorToken;
 import com.security.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -51,6 +52,10 @@ public interface TwoFactorTokenRepository extends JpaRepository<TwoFactorToken,
         @Query("DELETE FROM TwoFactorToken tft WHERE tft.used = true AND tft.usedAt < :cutoff")
         void deleteOldUsedTokens(@Param("cutoff") LocalDateTime cutoff);
 
+        // Purga por lotes (RetentionPurgeService): ids de tokens usados antiguos
+        @Query("SELECT tft.id FROM TwoFactorToken tft WHERE tft.used = true AND tft.usedAt < :cutoff ORDER BY tft.usedAt")
+        List<Long> findOldUsedTokenIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
         // Verificaciones útiles
         boolean existsByToken(String token);
 
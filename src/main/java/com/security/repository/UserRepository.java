@@ -1,48 +1,88 @@
 package com.security.repository;
 
 import com.security.entity.User;
+import com.security.enums.RoleName;
+import com.security.repository.projection.TwoFactorStatus;
+import com.security.repository.projection.UserSummary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
     // Métodos para autenticación (CORREGIDOS)
     Optional<User> findByEmail(String email);
 
+    // Listado de administración: solo columnas escalares, paginado en SQL
+    @Query(value = "SELECT new com.security.repository.projection.UserSummary(u.id, u.email, u.firstName, "
+            + "u.lastName, u.phone, u.enabled, u.twoFactorEnabled, u.googleAuthEnabled, u.smsEnabled, "
+            + "u.emailEnabled, u.createdAt, u.updatedAt) FROM User u",
+            countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserSummary> findAllSummaries(Pageable pageable);
+
+    // Roles de una página de usuarios en una sola consulta: (userId, RoleName)
+    @Query("SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :userIds")
+    List<Object[]> findRoleNamesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    // Estado de 2FA sin cargar la entidad
+    @Query("SELECT new com.security.repository.projection.TwoFactorStatus(u.twoFactorEnabled, u.twoFactorType, "
+            + "CASE WHEN u.twoFactorSecret IS NOT NULL THEN true ELSE false END, "
+            + "u.googleAuthEnabled, u.smsEnabled, u.emailEnabled) FROM User u WHERE u.id = :id")
+    Optional<TwoFactorStatus> findTwoFactorStatusById(@Param("id") Long id);
+
     // Verificar existencia
     boolean existsByEmail(String email);
 
-    // Métodos para estado del usuario
-    List<User> findByEnabled(boolean enabled);
+    // Métodos para estado del usuario (siempre paginados)
+    Slice<User> findByEnabled(boolean enabled, Pageable pageable);
 
-    List<User> findByAccountNonLocked(boolean accountNonLocked);
+    Slice<User> findByAccountNonLocked(boolean accountNonLocked, Pageable pageable);
 
     // Métodos para autenticación de dos factores
     Optional<User> findByTwoFactorSecret(String twoFactorSecret);
 
-    List<User> findByTwoFactorEnabledTrue();
+    Slice<User> findByTwoFactorEnabledTrue(Pageable pageable);
 
-    // Búsquedas personalizadas
-    @Query("SELECT u FROM User u WHERE u.email LIKE %:searchTerm% OR u.firstName LIKE %:searchTerm% OR u.lastName LIKE %:searchTerm%")
-    List<User> findByEmailOrNameContaining(@Param("searchTerm") String searchTerm);
+    // Carga del índice de búsqueda por lotes: (id, email, firstName, lastName)
+    @Query("SELECT u.id, u.email, u.firstName, u.lastName FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findSearchEntriesAfter(@Param("afterId") Long afterId, Pageable pageable);
 
     @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = :roleName")
-    List<User> findByRoleName(@Param("roleName") String roleName);
+    Slice<User> findByRoleName(@Param("roleName") RoleName roleName, Pageable pageable);
 
     // Métodos para gestión de cuentas
     @Query("SELECT u FROM User u WHERE u.createdAt BETWEEN :startDate AND :endDate")
     List<User> findByCreatedAtBetween(@Param("startDate") LocalDateTime startDate,
             @Param("endDate") LocalDateTime endDate);
 
+    // Versiones de seguridad (solo usuarios con tokens invalidados alguna vez)
+    @Query("SELECT u.id, u.securityVersion FROM User u WHERE u.securityVersion > 0")
+    List<Object[]> findSecurityVersions();
+
     // Contadores
     long countByEnabled(boolean enabled);
 
+    // Usuarios cuyo hash sigue siendo el BCrypt heredado (sin prefijo {id})
+    @Query("SELECT COUNT(u) FROM User u WHERE u.password NOT LIKE '{%'")
+    long countLegacyPasswordHashes();
+
+    // Reconciliación de UserStatistics: (total, habilitados, con 2FA) en una pasada
+    @Query("SELECT COUNT(u), SUM(CASE WHEN u.enabled = true THEN 1 ELSE 0 END), "
+            + "SUM(CASE WHEN u.twoFactorEnabled = true THEN 1 ELSE 0 END) FROM User u")
+    List<Object[]> countUserStatistics();
+
+    @Query("SELECT r.name, COUNT(u) FROM User u JOIN u.roles r GROUP BY r.name")
+    List<Object[]> countUsersGroupedByRole();
+
     long countByTwoFactorEnabled(boolean twoFactorEnabled);
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.security.repository;
+
+import com.security.entity.User;
+import com.security.enums.RoleName;
+import com.security.enums.TwoFactorType;
+import com.security.repository.projection.UserSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+
+    /**
+     * Usuario y roles desde la caché de segundo nivel (natural id email ->
+     * id -> entidad -> colección de roles). Solo va a la BD en un fallo de caché;
+     * sin caché de segundo nivel, una sola sentencia con JOIN FETCH.
+     * No sirve para comprobar credenciales: ver findCredentialsByEmail.
+     */
+    Optional<User> findWithRolesByEmail(String email);
+
+    /**
+     * Si el usuario no está en la caché de segundo nivel, usuario y roles en
+     * una sola sentencia con JOIN FETCH (que deja ambos en la caché).
+     */
+    Optional<User> findWithRolesById(Long id);
+
+    /**
+     * Como findWithRolesByEmail pero leído siempre de la BD con una sola
+     * sentencia JOIN FETCH (CacheMode.REFRESH):
+     * hash de contraseña, bloqueo y versión de seguridad no pueden venir de la
+     * copia de este nodo. La lectura refresca además la caché de segundo nivel.
+     */
+    Optional<User> findCredentialsByEmail(String email);
+
+    Optional<User> findCredentialsById(Long id);
+
+    /**
+     * Listado por keyset. Los filtros nulos no se aplican; afterId es el último
+     * id de la página anterior o null para la primera. Con rango de fechas el
+     * orden es (createdAt, id) descendente, para recorrer idx_users_created_at_id;
+     * sin él, id descendente.
+     */
+    List<UserSummary> findSummariesAfter(Boolean enabled, TwoFactorType twoFactorType, RoleName role,
+            LocalDateTime createdFrom, LocalDateTime createdTo, Long afterId, int limit);
+}
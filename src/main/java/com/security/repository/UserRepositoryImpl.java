@@ -0,0 +1,161 @@
+package com.security.repository;
+
+import com.security.entity.User;
+import com.security.enums.RoleName;
+import com.security.enums.TwoFactorType;
+import com.security.repository.projection.UserSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Consultas de UserRepository que se construyen dinámicamente.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private static final String FETCH_WITH_ROLES_BY_EMAIL =
+            "SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.email = :key";
+    private static final String FETCH_WITH_ROLES_BY_ID =
+            "SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id = :key";
+
+    @Override
+    @Transactional
+    public Optional<User> findWithRolesByEmail(String email) {
+        // El email se resuelve en la caché de natural id, que no se puede consultar sin cargar
+        if (!isSecondLevelCacheEnabled()) {
+            return fetchWithRoles(FETCH_WITH_ROLES_BY_EMAIL, email);
+        }
+        Optional<User> user = entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(User.class)
+                .loadOptional(email);
+        user.ifPresent(u -> Hibernate.initialize(u.getRoles()));
+        return user;
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> findWithRolesById(Long id) {
+        if (!entityManager.getEntityManagerFactory().getCache().contains(User.class, id)) {
+            return fetchWithRoles(FETCH_WITH_ROLES_BY_ID, id);
+        }
+        Optional<User> user = Optional.ofNullable(entityManager.find(User.class, id));
+        user.ifPresent(u -> Hibernate.initialize(u.getRoles()));
+        return user;
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> findCredentialsByEmail(String email) {
+        return bypassingSecondLevelCache(() -> fetchWithRoles(FETCH_WITH_ROLES_BY_EMAIL, email));
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> findCredentialsById(Long id) {
+        return bypassingSecondLevelCache(() -> fetchWithRoles(FETCH_WITH_ROLES_BY_ID, id));
+    }
+
+    // Usuario y roles en una sola sentencia; también rellena la caché de segundo nivel
+    private Optional<User> fetchWithRoles(String jpql, Object key) {
+        List<User> users = entityManager.createQuery(jpql, User.class)
+                .setParameter("key", key)
+                .getResultList();
+        return users.isEmpty() ? Optional.empty() : Optional.of(users.get(0));
+    }
+
+    private boolean isSecondLevelCacheEnabled() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    // La caché de segundo nivel es local a cada nodo: un cambio hecho en otro no se ve hasta que caduca
+    private <T> T bypassingSecondLevelCache(Supplier<T> load) {
+        Session session = entityManager.unwrap(Session.class);
+        CacheMode previous = session.getCacheMode();
+        session.setCacheMode(CacheMode.REFRESH);
+        try {
+            return load.get();
+        } finally {
+            session.setCacheMode(previous);
+        }
+    }
+
+    @Override
+    public List<UserSummary> findSummariesAfter(Boolean enabled, TwoFactorType twoFactorType, RoleName role,
+            LocalDateTime createdFrom, LocalDateTime createdTo, Long afterId, int limit) {
+        StringBuilder jpql = new StringBuilder(
+                "SELECT new com.security.repository.projection.UserSummary(u.id, u.email, u.firstName, "
+                        + "u.lastName, u.phone, u.enabled, u.twoFactorEnabled, u.googleAuthEnabled, u.smsEnabled, "
+                        + "u.emailEnabled, u.createdAt, u.updatedAt) FROM User u WHERE 1 = 1");
+        Map<String, Object> params = new HashMap<>();
+
+        if (enabled != null) {
+            jpql.append(" AND u.enabled = :enabled");
+            params.put("enabled", enabled);
+        }
+        if (twoFactorType != null) {
+            jpql.append(" AND u.twoFactorType = :twoFactorType");
+            params.put("twoFactorType", twoFactorType);
+        }
+        if (role != null) {
+            jpql.append(" AND EXISTS (SELECT 1 FROM User ur JOIN ur.roles r WHERE ur.id = u.id AND r.name = :role)");
+            params.put("role", role);
+        }
+        if (createdFrom != null) {
+            jpql.append(" AND u.createdAt >= :createdFrom");
+            params.put("createdFrom", createdFrom);
+        }
+        if (createdTo != null) {
+            jpql.append(" AND u.createdAt < :createdTo");
+            params.put("createdTo", createdTo);
+        }
+        // Solo enabled y twoFactorType (igualdad + id) y el rango de fechas (createdAt + id)
+        // tienen índice que sirve el orden. El rol es un EXISTS correlacionado que se
+        // comprueba fila a fila contra idx_user_roles_role_id_user_id mientras se recorre
+        // otro índice, igual que cualquier filtro que se combine con otro.
+        boolean byCreatedAt = createdFrom != null || createdTo != null;
+
+        // Keyset: continúa justo después del último id devuelto, sin OFFSET
+        if (afterId != null) {
+            LocalDateTime afterCreatedAt = byCreatedAt ? findCreatedAt(afterId) : null;
+            if (afterCreatedAt != null) {
+                jpql.append(" AND (u.createdAt < :afterCreatedAt OR (u.createdAt = :afterCreatedAt AND u.id < :afterId))");
+                params.put("afterCreatedAt", afterCreatedAt);
+            } else {
+                // Sin rango de fechas, o el usuario del cursor ya no existe
+                jpql.append(" AND u.id < :afterId");
+            }
+            params.put("afterId", afterId);
+        }
+        jpql.append(byCreatedAt ? " ORDER BY u.createdAt DESC, u.id DESC" : " ORDER BY u.id DESC");
+
+        TypedQuery<UserSummary> query = entityManager.createQuery(jpql.toString(), UserSummary.class);
+        params.forEach(query::setParameter);
+        query.setMaxResults(limit);
+        return query.getResultList();
+    }
+
+    // createdAt no se actualiza nunca: el cursor sigue siendo el id y su fecha se resuelve por PK
+    private LocalDateTime findCreatedAt(Long id) {
+        List<LocalDateTime> createdAt = entityManager
+                .createQuery("SELECT u.createdAt FROM User u WHERE u.id = :id", LocalDateTime.class)
+                .setParameter("id", id)
+                .getResultList();
+        return createdAt.isEmpty() ? null : createdAt.get(0);
+    }
+}
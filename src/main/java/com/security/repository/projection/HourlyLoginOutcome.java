@@ -0,0 +1,12 @@
+package com.security.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Éxitos y fallos de login en una hora.
+ */
+public record HourlyLoginOutcome(
+        LocalDateTime hour,
+        Long successful,
+        Long failed) {
+}
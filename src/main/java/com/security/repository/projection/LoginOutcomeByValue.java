@@ -0,0 +1,10 @@
+package com.security.repository.projection;
+
+/**
+ * Éxitos y fallos de login acumulados para una IP o un dominio de email.
+ */
+public record LoginOutcomeByValue(
+        String value,
+        Long successful,
+        Long failed) {
+}
@@ -0,0 +1,15 @@
+package com.security.repository.projection;
+
+import com.security.enums.TwoFactorType;
+
+/**
+ * Estado de 2FA de un usuario. El secreto no se lee: solo si existe.
+ */
+public record TwoFactorStatus(
+        Boolean twoFactorEnabled,
+        TwoFactorType twoFactorType,
+        boolean hasSecret,
+        Boolean googleAuthEnabled,
+        Boolean smsEnabled,
+        Boolean emailEnabled) {
+}
@@ -0,0 +1,22 @@
+package com.security.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Columnas del usuario que necesita el listado de administración, sin roles
+ * ni secretos de 2FA.
+ */
+public record UserSummary(
+        Long id,
+        String email,
+        String firstName,
+        String lastName,
+        String phone,
+        boolean enabled,
+        Boolean twoFactorEnabled,
+        Boolean googleAuthEnabled,
+        Boolean smsEnabled,
+        Boolean emailEnabled,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+}
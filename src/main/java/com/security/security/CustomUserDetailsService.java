@@ -15,20 +15,25 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        User user = userRepository.findByEmail(email)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with email : " + email));
-
-        return UserPrincipal.create(user);
+        return userPrincipalCache.getByEmail(email, key -> {
+            User user = userRepository.findWithRolesByEmail(key)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with email : " + key));
+            return UserPrincipal.create(user);
+        });
     }
 
     @Transactional
     public UserDetails loadUserById(Long id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with id : " + id));
-
-        return UserPrincipal.create(user);
+        return userPrincipalCache.getById(id, key -> {
+            User user = userRepository.findWithRolesById(key)
+                    .orElseThrow(() -> new UsernameNotFoundException("User not found with id : " + key));
+            return UserPrincipal.create(user);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.security.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+
+/**
+ * Almacén concurrente y acotado de códigos de un solo uso (2FA por email,
+ * intentos de SMS, throttles de reset...). Cada entrada lleva su propio TTL y
+ * un contador de intentos; la caducidad la gestiona el timer wheel jerárquico
+ * de Caffeine con el scheduler del sistema, así que las entradas vencidas
+ * desaparecen solas sin barridos removeIf sobre todo el mapa.
+ */
+public final class ExpiringCodeStore<K> {
+
+    public enum Result {
+        VALID,
+        INVALID,
+        MISSING,
+        TOO_MANY_ATTEMPTS
+    }
+
+    private final Cache<K, Entry> cache;
+    private final int maxAttempts;
+
+    public ExpiringCodeStore(String name, long maximumSize, int maxAttempts, MeterRegistry meterRegistry) {
+        this.maxAttempts = maxAttempts;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new EntryExpiry())
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * Guarda (o sustituye) el código de la clave, con los intentos a cero
+     */
+    public void put(K key, String code, Duration ttl) {
+        cache.put(key, new Entry(code, deadline(ttl)));
+    }
+
+    /**
+     * Comprueba el código en tiempo constante. Un acierto lo consume; cada fallo
+     * cuenta y al llegar a maxAttempts el código se descarta.
+     */
+    public Result verify(K key, String code) {
+        Result[] result = { Result.MISSING };
+        cache.asMap().computeIfPresent(key, (k, entry) -> {
+            if (entry.code == null) {
+                // Contador o throttle de la misma clave, no un código
+                return entry;
+            }
+            if (entry.attempts >= maxAttempts) {
+                result[0] = Result.TOO_MANY_ATTEMPTS;
+                return null;
+            }
+            if (code != null && MessageDigest.isEqual(entry.code.getBytes(StandardCharsets.UTF_8),
+                    code.getBytes(StandardCharsets.UTF_8))) {
+                result[0] = Result.VALID;
+                return null;
+            }
+            Entry failed = entry.withAttempt();
+            result[0] = failed.attempts >= maxAttempts ? Result.TOO_MANY_ATTEMPTS : Result.INVALID;
+            return failed.attempts >= maxAttempts ? null : failed;
+        });
+        return result[0];
+    }
+
+    /**
+     * Suma un intento a la clave (la crea con el TTL dado si no existe) y
+     * devuelve el total. El TTL no se renueva con cada intento.
+     */
+    public int recordAttempt(K key, Duration ttl) {
+        return cache.asMap().merge(key, new Entry(null, deadline(ttl)).withAttempt(),
+                (current, created) -> current.withAttempt()).attempts;
+    }
+
+    public boolean isExhausted(K key) {
+        Entry entry = cache.getIfPresent(key);
+        return entry != null && entry.attempts >= maxAttempts;
+    }
+
+    /**
+     * Throttle: true si la clave estaba libre y queda ocupada durante ttl
+     */
+    public boolean tryAcquire(K key, Duration ttl) {
+        return cache.asMap().putIfAbsent(key, new Entry(null, deadline(ttl))) == null;
+    }
+
+    /**
+     * Segundos que faltan para que caduque la entrada (0 si no existe)
+     */
+    public long secondsToExpiry(K key) {
+        return cache.policy().expireVariably()
+                .flatMap(policy -> policy.getExpiresAfter(key))
+                .map(remaining -> Math.max(1, (remaining.toMillis() + 999) / 1000))
+                .orElse(0L);
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Ejecuta el mantenimiento pendiente (expiraciones ya vencidas en el timer wheel)
+     */
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    private static long deadline(Duration ttl) {
+        return System.nanoTime() + ttl.toNanos();
+    }
+
+    private static final class Entry {
+        final String code;
+        final long deadlineNanos;
+        final int attempts;
+
+        Entry(String code, long deadlineNanos) {
+            this(code, deadlineNanos, 0);
+        }
+
+        private Entry(String code, long deadlineNanos, int attempts) {
+            this.code = code;
+            this.deadlineNanos = deadlineNanos;
+            this.attempts = attempts;
+        }
+
+        Entry withAttempt() {
+            return new Entry(code, deadlineNanos, attempts + 1);
+        }
+    }
+
+    // El plazo va en la entrada: crear o sustituir usa el suyo, leer no lo alarga
+    private static final class EntryExpiry implements Expiry<Object, Entry> {
+
+        @Override
+        public long expireAfterCreate(Object key, Entry value, long currentTime) {
+            return Math.max(0, value.deadlineNanos - currentTime);
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Entry value, long currentTime, long currentDuration) {
+            return Math.max(0, value.deadlineNanos - currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
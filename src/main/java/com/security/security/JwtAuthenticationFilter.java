@@ -5,6 +5,7 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -17,26 +18,43 @@ import java.io.IOException;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JwtTokenProvider tokenProvider;
+    private VerifiedTokenCache verifiedTokenCache;
 
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private SecurityVersionTable securityVersionTable;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    // true: el principal se construye con los claims del JWT, sin consultar la BD
+    @Value("${app.security.jwt.claims-only:false}")
+    private boolean claimsOnly;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
             String jwt = getJwtFromRequest(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                Long userId = tokenProvider.getUserIdFromJWT(jwt);
+            if (StringUtils.hasText(jwt)) {
+                VerifiedToken verified = verifiedTokenCache.getOrVerify(jwt);
+                String rejection = getRejectionReason(verified);
 
-                UserDetails userDetails = customUserDetailsService.loadUserById(userId);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                if (rejection == null) {
+                    UserDetails userDetails = claimsOnly
+                            ? UserPrincipal.fromToken(verified)
+                            : customUserDetailsService.loadUserById(verified.getUserId());
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                } else {
+                    logger.debug("JWT rejected: " + rejection);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -45,6 +63,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private String getRejectionReason(VerifiedToken verified) {
+        if (!verified.isValid()) {
+            return verified.getFailureReason().name();
+        }
+        if (tokenRevocationList.isRevoked(verified.getTokenId())) {
+            return "REVOKED";
+        }
+        if (!securityVersionTable.isCurrent(verified.getUserId(), verified.getSecurityVersion())) {
+            return "STALE_SECURITY_VERSION";
+        }
+        return null;
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -0,0 +1,291 @@
+package com.security.security;
+
+import com.security.entity.SigningKey;
+import com.security.repository.SigningKeyRepository;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Anillo de claves ES256 para firmar JWT. Las claves se guardan en BD para que
+ * todas las instancias firmen y verifiquen con el mismo conjunto, y se rotan
+ * periódicamente. Las claves antiguas se siguen publicando en el JWKS mientras
+ * pueda quedar algún token vigente firmado con ellas.
+ * Las claves privadas se guardan cifradas (AES-256-GCM) con una clave que no
+ * está en la BD (app.security.jwt.key-encryption-key). Una clave nueva se
+ * publica antes de empezar a firmar con ella, para que todas las instancias
+ * la conozcan cuando llegue el primer token.
+ */
+@Component
+public class JwtKeyRing {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private static final String ES256 = "ES256";
+    private static final long UNKNOWN_KID_RELOAD_INTERVAL_MS = 5000;
+    private static final long ROTATION_GRACE_MS = 300000;
+    private static final String ENCRYPTED_PREFIX = "v1:";
+    private static final int IV_LENGTH = 12;
+
+    @Autowired
+    private SigningKeyRepository signingKeyRepository;
+
+    @Value("${app.security.jwt.algorithm:HS512}")
+    private String algorithm;
+
+    @Value("${app.security.jwt.key-rotation:86400000}")
+    private long rotationMs;
+
+    @Value("${app.security.jwt.expiration:86400000}")
+    private long jwtExpirationMs;
+
+    @Value("${app.security.jwt.key-refresh:60000}")
+    private long keyRefreshMs;
+
+    // 32 bytes en Base64, desde el entorno o un KMS; obligatoria con ES256
+    @Value("${app.security.jwt.key-encryption-key:}")
+    private String keyEncryptionKey;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private SecretKeySpec wrappingKey;
+
+    private volatile KeySet keySet = KeySet.EMPTY;
+    private volatile long lastReload;
+    private volatile boolean reloadRequested;
+
+    @PostConstruct
+    public void init() {
+        if (isAsymmetric()) {
+            byte[] kek = keyEncryptionKey.isBlank() ? new byte[0] : Base64.getDecoder().decode(keyEncryptionKey.trim());
+            if (kek.length != 32) {
+                throw new IllegalStateException(
+                        "ES256 requires app.security.jwt.key-encryption-key (32 bytes, Base64)");
+            }
+            this.wrappingKey = new SecretKeySpec(kek, "AES");
+            rotateIfNeeded();
+            logger.info("Firma JWT ES256 activa. kid actual: {}", keySet.activeKid);
+        }
+    }
+
+    public boolean isAsymmetric() {
+        return ES256.equalsIgnoreCase(algorithm);
+    }
+
+    /**
+     * Recarga las claves desde la BD y genera una nueva si la activa ya
+     * cumplió su periodo de rotación.
+     */
+    @Scheduled(fixedDelayString = "${app.security.jwt.key-refresh:60000}",
+            initialDelayString = "${app.security.jwt.key-refresh:60000}")
+    public synchronized void rotateIfNeeded() {
+        if (!isAsymmetric()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<SigningKey> usable = new ArrayList<>(signingKeyRepository.findUsableKeys(ES256, now));
+
+        // Filas anteriores con la clave privada en claro: se cifran en el sitio
+        for (SigningKey key : usable) {
+            if (!key.getPrivateKey().startsWith(ENCRYPTED_PREFIX)) {
+                key.setPrivateKey(encryptPrivateKey(key.getKid(), Base64.getDecoder().decode(key.getPrivateKey())));
+                signingKeyRepository.save(key);
+            }
+        }
+
+        if (usable.isEmpty() || usable.get(0).getCreatedAt().plus(Duration.ofMillis(rotationMs)).isBefore(now)) {
+            usable.add(0, signingKeyRepository.save(generateKey(now)));
+            signingKeyRepository.deleteExpiredKeys(now);
+            logger.info("Nueva clave de firma JWT generada: {}", usable.get(0).getKid());
+        }
+
+        // Se firma con la clave más reciente que ya han podido cargar todas las instancias
+        LocalDateTime publishedBefore = now.minus(Duration.ofMillis(2 * keyRefreshMs));
+        SigningKey active = usable.stream()
+                .filter(key -> key.getCreatedAt() == null || !key.getCreatedAt().isAfter(publishedBefore))
+                .findFirst()
+                .orElse(usable.get(0));
+
+        this.keySet = KeySet.from(usable, active, decryptPrivateKey(active));
+        this.lastReload = System.currentTimeMillis();
+    }
+
+    /**
+     * Recarga pedida por un kid desconocido, fuera del hilo de la petición
+     */
+    @Scheduled(fixedDelay = UNKNOWN_KID_RELOAD_INTERVAL_MS)
+    public void reloadIfRequested() {
+        if (reloadRequested && System.currentTimeMillis() - lastReload > UNKNOWN_KID_RELOAD_INTERVAL_MS) {
+            reloadRequested = false;
+            rotateIfNeeded();
+        }
+    }
+
+    public String getActiveKid() {
+        return keySet.activeKid;
+    }
+
+    public PrivateKey getActivePrivateKey() {
+        return keySet.activePrivateKey;
+    }
+
+    /**
+     * Clave pública para un kid. Un kid desconocido no bloquea la petición:
+     * se rechaza el token y se pide una recarga al scheduler (como mucho una
+     * cada pocos segundos). Con la publicación anticipada de claves nuevas
+     * solo ocurre con tokens ajenos o con una instancia que no pudo recargar.
+     */
+    public PublicKey getVerificationKey(String kid) {
+        PublicKey key = keySet.publicKeys.get(kid);
+        if (key == null && isAsymmetric()) {
+            reloadRequested = true;
+        }
+        return key;
+    }
+
+    /**
+     * Documento JWKS precalculado en la última recarga.
+     */
+    public Map<String, Object> getJwks() {
+        return keySet.jwks;
+    }
+
+    private SigningKey generateKey(LocalDateTime now) {
+        KeyPair keyPair = Keys.keyPairFor(SignatureAlgorithm.ES256);
+
+        byte[] kidBytes = new byte[9];
+        secureRandom.nextBytes(kidBytes);
+        String kid = Base64.getUrlEncoder().withoutPadding().encodeToString(kidBytes);
+
+        LocalDateTime expiresAt = now.plus(Duration.ofMillis(rotationMs + 2 * keyRefreshMs + jwtExpirationMs + ROTATION_GRACE_MS));
+
+        return new SigningKey(kid, ES256,
+                Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                encryptPrivateKey(kid, keyPair.getPrivate().getEncoded()),
+                expiresAt);
+    }
+
+    // "v1:" + Base64(iv || cifrado); el kid va como AAD, así una fila no puede usar la clave de otra
+    private String encryptPrivateKey(String kid, byte[] pkcs8) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, wrappingKey, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(kid.getBytes(StandardCharsets.UTF_8));
+            byte[] sealed = cipher.doFinal(pkcs8);
+
+            byte[] out = new byte[IV_LENGTH + sealed.length];
+            System.arraycopy(iv, 0, out, 0, IV_LENGTH);
+            System.arraycopy(sealed, 0, out, IV_LENGTH, sealed.length);
+            return ENCRYPTED_PREFIX + Base64.getEncoder().encodeToString(out);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt JWT signing key", e);
+        }
+    }
+
+    private PrivateKey decryptPrivateKey(SigningKey key) {
+        try {
+            byte[] raw = Base64.getDecoder().decode(key.getPrivateKey().substring(ENCRYPTED_PREFIX.length()));
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, wrappingKey, new GCMParameterSpec(128, raw, 0, IV_LENGTH));
+            cipher.updateAAD(key.getKid().getBytes(StandardCharsets.UTF_8));
+            byte[] pkcs8 = cipher.doFinal(raw, IV_LENGTH, raw.length - IV_LENGTH);
+            return KeyFactory.getInstance("EC").generatePrivate(new PKCS8EncodedKeySpec(pkcs8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt JWT signing key " + key.getKid()
+                    + " (wrong key-encryption-key?)", e);
+        }
+    }
+
+    private static final class KeySet {
+
+        static final KeySet EMPTY = new KeySet(null, null, Collections.emptyMap(),
+                Collections.singletonMap("keys", Collections.emptyList()));
+
+        final String activeKid;
+        final PrivateKey activePrivateKey;
+        final Map<String, PublicKey> publicKeys;
+        final Map<String, Object> jwks;
+
+        private KeySet(String activeKid, PrivateKey activePrivateKey, Map<String, PublicKey> publicKeys,
+                Map<String, Object> jwks) {
+            this.activeKid = activeKid;
+            this.activePrivateKey = activePrivateKey;
+            this.publicKeys = publicKeys;
+            this.jwks = jwks;
+        }
+
+        static KeySet from(List<SigningKey> keys, SigningKey active, PrivateKey activePrivateKey) {
+            try {
+                KeyFactory keyFactory = KeyFactory.getInstance("EC");
+                Map<String, PublicKey> publicKeys = new HashMap<>();
+                List<Map<String, Object>> jwkList = new ArrayList<>();
+
+                for (SigningKey key : keys) {
+                    PublicKey publicKey = keyFactory.generatePublic(
+                            new X509EncodedKeySpec(Base64.getDecoder().decode(key.getPublicKey())));
+                    publicKeys.put(key.getKid(), publicKey);
+                    jwkList.add(toJwk(key.getKid(), (ECPublicKey) publicKey));
+                }
+
+                return new KeySet(active.getKid(), activePrivateKey, Collections.unmodifiableMap(publicKeys),
+                        Collections.singletonMap("keys", Collections.unmodifiableList(jwkList)));
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Could not load JWT signing keys", e);
+            }
+        }
+
+        private static Map<String, Object> toJwk(String kid, ECPublicKey publicKey) {
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("use", "sig");
+            jwk.put("alg", ES256);
+            jwk.put("kid", kid);
+            jwk.put("x", base64Url(publicKey.getW().getAffineX()));
+            jwk.put("y", base64Url(publicKey.getW().getAffineY()));
+            return Collections.unmodifiableMap(jwk);
+        }
+
+        // Coordenada como entero sin signo de 32 bytes (RFC 7518, sección 6.2.1.2)
+        private static String base64Url(BigInteger coordinate) {
+            byte[] raw = coordinate.toByteArray();
+            byte[] fixed = new byte[32];
+            int length = Math.min(raw.length, 32);
+            System.arraycopy(raw, raw.length - length, fixed, 32 - length, length);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(fixed);
+        }
+    }
+}
@@ -3,30 +3,91 @@ package com.security.security;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.security.Key;
+import java.security.PublicKey;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
 
-    @Value("${app.security.jwt.secret:mySecretKey12345678901234567890123456789012345678901234567890}")
+    private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
+
+    // Valores por defecto que se publicaron en el repositorio: cualquiera puede firmar con ellos
+    private static final Set<String> PUBLISHED_SECRETS = Set.of(
+            "mySecretKey12345678901234567890123456789012345678901234567890",
+            "mySecretKey123456789012345678901234567890123456789012345678901234567890123456789012345678901234567890");
+
+    @Value("${app.security.jwt.secret:}")
     private String jwtSecret;
 
+    // Migración a ES256: hasta este instante se aceptan aún tokens HS512 sin kid (vacío = nunca)
+    @Value("${app.security.jwt.hs512-accepted-until:}")
+    private String hs512AcceptedUntil;
+
     @Value("${app.security.jwt.expiration:86400000}")
     private int jwtExpirationInMs;
 
+    @Autowired
+    private JwtKeyRing keyRing;
+
+    static final String SECURITY_VERSION_CLAIM = "ver";
+
     private SecretKey key;
+    private Instant legacyHs512Deadline;
+
+    // JwtParser es inmutable y thread-safe: se construye una sola vez
+    private JwtParser jwtParser;
 
     @PostConstruct
     public void init() {
+        if (jwtSecret == null || jwtSecret.isBlank() || PUBLISHED_SECRETS.contains(jwtSecret)) {
+            throw new IllegalStateException("app.security.jwt.secret (JWT_SECRET) must be set to a private value");
+        }
         this.key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.legacyHs512Deadline = hs512AcceptedUntil.isBlank() ? null : Instant.parse(hs512AcceptedUntil.trim());
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    // jjwt 0.11 declara JwsHeader sin parametrizar en esta firma
+                    @Override
+                    @SuppressWarnings("rawtypes")
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        // Sin kid: token HS512 firmado con el secreto compartido. Con ES256 activo
+                        // solo se aceptan dentro de la ventana de migración
+                        if (header.getKeyId() == null) {
+                            if (keyRing.isAsymmetric() && !acceptsLegacyHs512()) {
+                                throw new io.jsonwebtoken.security.SignatureException(
+                                        "HS512 JWT without kid is no longer accepted");
+                            }
+                            return key;
+                        }
+                        PublicKey publicKey = keyRing.getVerificationKey(header.getKeyId());
+                        if (publicKey == null) {
+                            throw new io.jsonwebtoken.security.SignatureException(
+                                    "Unknown JWT signing key: " + header.getKeyId());
+                        }
+                        return publicKey;
+                    }
+                })
+                .build();
+    }
+
+    private boolean acceptsLegacyHs512() {
+        return legacyHs512Deadline != null && Instant.now().isBefore(legacyHs512Deadline);
     }
 
     public String generateToken(Authentication authentication) {
@@ -37,73 +98,114 @@ public class JwtTokenProvider {
                 .map(GrantedAuthority::getAuthority)
                 .collect(Collectors.toSet());
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(Long.toString(userPrincipal.getId()))
                 .claim("email", userPrincipal.getEmail())
                 .claim("roles", roles)
+                .claim(SECURITY_VERSION_CLAIM, userPrincipal.getSecurityVersion())
                 .setIssuedAt(new Date())
-                .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+                .setExpiration(expiryDate);
+
+        return sign(builder);
     }
 
-    public String generateTokenFromUserId(Long userId, String email, Set<String> roles) {
+    public String generateTokenFromUserId(Long userId, String email, Set<String> roles, int securityVersion) {
         Date expiryDate = new Date(System.currentTimeMillis() + jwtExpirationInMs);
 
-        return Jwts.builder()
+        JwtBuilder builder = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(Long.toString(userId))
                 .claim("email", email)
                 .claim("roles", roles)
+                .claim(SECURITY_VERSION_CLAIM, securityVersion)
                 .setIssuedAt(new Date())
-                .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS512)
-                .compact();
+                .setExpiration(expiryDate);
+
+        return sign(builder);
+    }
+
+    private String sign(JwtBuilder builder) {
+        if (keyRing.isAsymmetric()) {
+            return builder
+                    .setHeaderParam(JwsHeader.KEY_ID, keyRing.getActiveKid())
+                    .signWith(keyRing.getActivePrivateKey(), SignatureAlgorithm.ES256)
+                    .compact();
+        }
+        return builder.signWith(key, SignatureAlgorithm.HS512).compact();
+    }
+
+    /**
+     * Verifica firma y expiración una sola vez y devuelve los claims ya
+     * decodificados. Nunca lanza excepción: el motivo del fallo queda en el
+     * resultado.
+     */
+    public VerifiedToken verifyToken(String token) {
+        try {
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
+
+            return VerifiedToken.valid(
+                    claims.getId(),
+                    Long.parseLong(claims.getSubject()),
+                    claims.get("email", String.class),
+                    extractRoles(claims),
+                    claims.getIssuedAt(),
+                    claims.getExpiration(),
+                    extractSecurityVersion(claims));
+        } catch (io.jsonwebtoken.security.SecurityException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.INVALID_SIGNATURE);
+        } catch (ExpiredJwtException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.EXPIRED);
+        } catch (UnsupportedJwtException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.UNSUPPORTED);
+        } catch (MalformedJwtException | NumberFormatException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.MALFORMED);
+        } catch (IllegalArgumentException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.EMPTY);
+        } catch (JwtException ex) {
+            return VerifiedToken.invalid(VerifiedToken.FailureReason.MALFORMED);
+        }
+    }
+
+    private int extractSecurityVersion(Claims claims) {
+        Object version = claims.get(SECURITY_VERSION_CLAIM);
+        return version instanceof Number ? ((Number) version).intValue() : 0;
+    }
+
+    private Set<String> extractRoles(Claims claims) {
+        Object roles = claims.get("roles");
+        Set<String> result = new HashSet<>();
+        if (roles instanceof Collection<?>) {
+            for (Object role : (Collection<?>) roles) {
+                result.add(String.valueOf(role));
+            }
+        }
+        Set<String> interned = RoleCatalog.internNames(result);
+        return interned != null ? interned : result;
     }
 
     public Long getUserIdFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
 
         return Long.parseLong(claims.getSubject());
     }
 
     public String getEmailFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
 
         return claims.get("email", String.class);
     }
 
     public boolean validateToken(String authToken) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
-        } catch (SecurityException ex) {
-            System.err.println("Invalid JWT signature");
-        } catch (MalformedJwtException ex) {
-            System.err.println("Invalid JWT token");
-        } catch (ExpiredJwtException ex) {
-            System.err.println("Expired JWT token");
-        } catch (UnsupportedJwtException ex) {
-            System.err.println("Unsupported JWT token");
-        } catch (IllegalArgumentException ex) {
-            System.err.println("JWT claims string is empty");
+        VerifiedToken verified = verifyToken(authToken);
+        if (!verified.isValid()) {
+            logger.debug("JWT rechazado: {}", verified.getFailureReason());
         }
-        return false;
+        return verified.isValid();
     }
 
     public Date getExpirationDateFromJWT(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
 
         return claims.getExpiration();
     }
@@ -0,0 +1,211 @@
+package com.security.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.security.entity.User;
+import com.security.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limitador de intentos fallidos de login en ventana deslizante, por email y
+ * por IP. Se consulta antes de cualquier hash, así que una ráfaga de
+ * credential stuffing se rechaza sin gastar CPU ni consultas COUNT a la BD.
+ * Cada clave cuenta en un anillo de franjas de tiempo con contadores atómicos.
+ */
+@Component
+public class LoginThrottle {
+
+    // Franjas por ventana: la ventana avanza de 1/SLICES en 1/SLICES
+    private static final int SLICES = 10;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.security.rate-limiting.max-login-attempts:5}")
+    private int maxEmailFailures;
+
+    @Value("${app.security.rate-limiting.max-ip-attempts:50}")
+    private int maxIpFailures;
+
+    @Value("${app.security.rate-limiting.lockout-duration:900000}")
+    private long lockoutDurationMs;
+
+    @Value("${app.security.rate-limiting.max-tracked-keys:100000}")
+    private long maxTrackedKeys;
+
+    private long sliceMs;
+
+    private Cache<String, SlidingWindow> byEmail;
+    private Cache<String, SlidingWindow> byIp;
+
+    private Counter emailThrottled;
+    private Counter ipThrottled;
+
+    @PostConstruct
+    public void init() {
+        // La ventana de conteo coincide con la duración del bloqueo
+        this.sliceMs = Math.max(1, lockoutDurationMs / SLICES);
+        this.byEmail = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(lockoutDurationMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        this.byIp = Caffeine.newBuilder()
+                .maximumSize(maxTrackedKeys)
+                .expireAfterAccess(lockoutDurationMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "login-throttle.by-email");
+        CaffeineCacheMetrics.monitor(meterRegistry, byIp, "login-throttle.by-ip");
+        this.emailThrottled = Counter.builder("auth.login.throttled").tag("key", "email").register(meterRegistry);
+        this.ipThrottled = Counter.builder("auth.login.throttled").tag("key", "ip").register(meterRegistry);
+    }
+
+    /**
+     * Rechaza el intento si el email o la IP ya agotaron sus fallos en la ventana
+     */
+    public void checkAllowed(String email, String ip) {
+        long now = System.currentTimeMillis();
+        SlidingWindow emailWindow = email != null ? byEmail.getIfPresent(normalize(email)) : null;
+        if (emailWindow != null && emailWindow.count(now) >= maxEmailFailures) {
+            emailThrottled.increment();
+            throw new TooManyRequestsException("Demasiados intentos fallidos. Inténtalo más tarde.",
+                    emailWindow.retryAfterSeconds(now, maxEmailFailures));
+        }
+        SlidingWindow ipWindow = ip != null ? byIp.getIfPresent(ip) : null;
+        if (ipWindow != null && ipWindow.count(now) >= maxIpFailures) {
+            ipThrottled.increment();
+            throw new TooManyRequestsException("Demasiados intentos fallidos desde esta dirección. Inténtalo más tarde.",
+                    ipWindow.retryAfterSeconds(now, maxIpFailures));
+        }
+    }
+
+    /**
+     * Registra un fallo. Devuelve true si con él el email alcanza el límite
+     * (momento de bloquear la cuenta).
+     */
+    public boolean recordFailure(String email, String ip) {
+        long now = System.currentTimeMillis();
+        if (ip != null) {
+            byIp.get(ip, key -> new SlidingWindow(sliceMs)).increment(now);
+        }
+        if (email == null) {
+            return false;
+        }
+        return byEmail.get(normalize(email), key -> new SlidingWindow(sliceMs)).increment(now) >= maxEmailFailures;
+    }
+
+    public void recordSuccess(String email) {
+        if (email != null) {
+            byEmail.invalidate(normalize(email));
+        }
+    }
+
+    /**
+     * Bloqueada si account_non_locked es false, salvo que sea un bloqueo por
+     * intentos fallidos (locked_at) que ya superó la duración configurada.
+     */
+    public boolean isLocked(User user) {
+        if (Boolean.TRUE.equals(user.getAccountNonLocked())) {
+            return false;
+        }
+        LocalDateTime lockedAt = user.getLockedAt();
+        return lockedAt == null
+                || lockedAt.plusNanos(TimeUnit.MILLISECONDS.toNanos(lockoutDurationMs)).isAfter(LocalDateTime.now());
+    }
+
+    public long getLockoutDurationMs() {
+        return lockoutDurationMs;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Anillo de SLICES franjas. Cada posición guarda franja y contador en un
+     * solo long (franja << COUNT_BITS | contador): reclamar una franja nueva y
+     * contar son el mismo CAS, así que ningún incremento concurrente se pierde.
+     */
+    static final class SlidingWindow {
+        private static final int COUNT_BITS = 20;
+        private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+        private final long sliceMs;
+        // 0 = posición sin usar (la franja 0 queda fuera de cualquier ventana real)
+        private final AtomicLongArray slots = new AtomicLongArray(SLICES);
+
+        SlidingWindow(long sliceMs) {
+            this.sliceMs = sliceMs;
+        }
+
+        long increment(long now) {
+            long slice = now / sliceMs;
+            int i = (int) (slice % SLICES);
+            while (true) {
+                long packed = slots.get(i);
+                long next;
+                if (epochOf(packed) >= slice) {
+                    // Misma franja (o una más nueva si este hilo llegó tarde): solo se cuenta
+                    if ((packed & COUNT_MASK) == COUNT_MASK) {
+                        break;
+                    }
+                    next = packed + 1;
+                } else {
+                    next = (slice << COUNT_BITS) | 1;
+                }
+                if (slots.compareAndSet(i, packed, next)) {
+                    break;
+                }
+            }
+            return count(now);
+        }
+
+        long count(long now) {
+            long current = now / sliceMs;
+            long total = 0;
+            for (int i = 0; i < SLICES; i++) {
+                long packed = slots.get(i);
+                if (epochOf(packed) > current - SLICES) {
+                    total += packed & COUNT_MASK;
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Segundos hasta que salgan de la ventana suficientes franjas para bajar del límite
+         */
+        long retryAfterSeconds(long now, int limit) {
+            long current = now / sliceMs;
+            long remaining = count(now);
+            for (long slice = current - SLICES + 1; slice <= current; slice++) {
+                long packed = slots.get((int) (slice % SLICES));
+                if (epochOf(packed) == slice) {
+                    remaining -= packed & COUNT_MASK;
+                }
+                if (remaining < limit) {
+                    long expiresAt = (slice + SLICES) * sliceMs;
+                    return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(expiresAt - now));
+                }
+            }
+            return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(sliceMs * SLICES));
+        }
+
+        private static long epochOf(long packed) {
+            return packed >>> COUNT_BITS;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.security.security;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * Mide en el arranque cuánto tarda un hash en esta máquina y elige el coste
+ * más alto que cabe en el presupuesto de latencia. Nunca baja del mínimo
+ * configurado, aunque el nodo sea lento.
+ */
+public final class PasswordHashCalibrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHashCalibrator.class);
+
+    private static final int SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-Passw0rd!";
+
+    private PasswordHashCalibrator() {
+    }
+
+    /**
+     * @param encoderForCost crea el encoder para un coste (strength de BCrypt, iteraciones de Argon2...)
+     * @return el coste elegido, entre minCost y maxCost
+     */
+    public static int calibrate(String algorithm, IntFunction<PasswordEncoder> encoderForCost,
+            int minCost, int maxCost, long budgetMs) {
+        int chosen = minCost;
+        long chosenMs = -1;
+        for (int cost = minCost; cost <= maxCost; cost++) {
+            long elapsedMs = medianMillis(encoderForCost.apply(cost));
+            if (elapsedMs > budgetMs) {
+                if (cost == minCost) {
+                    chosenMs = elapsedMs;
+                    logger.warn("{} con coste mínimo {} tarda {} ms, por encima del presupuesto de {} ms",
+                            algorithm, minCost, elapsedMs, budgetMs);
+                }
+                break;
+            }
+            chosen = cost;
+            chosenMs = elapsedMs;
+        }
+        logger.info("{} calibrado: coste {} (~{} ms por hash, presupuesto {} ms)", algorithm, chosen, chosenMs,
+                budgetMs);
+        return chosen;
+    }
+
+    private static long medianMillis(PasswordEncoder encoder) {
+        // Primera llamada de calentamiento (JIT, inicialización del SecureRandom)
+        encoder.encode(SAMPLE_PASSWORD);
+        long[] samples = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            long start = System.nanoTime();
+            encoder.encode(SAMPLE_PASSWORD);
+            samples[i] = (System.nanoTime() - start) / 1_000_000;
+        }
+        Arrays.sort(samples);
+        return samples[SAMPLES / 2];
+    }
+}
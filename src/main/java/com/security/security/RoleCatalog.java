@@ -0,0 +1,177 @@
+package com.security.security;
+
+import com.security.entity.Role;
+import com.security.enums.RoleName;
+import com.security.repository.RoleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Catálogo de roles. RoleName es un enum fijo, así que las authorities y los
+ * sets de nombres se precalculan una vez por cada combinación de roles
+ * (máscara de bits por ordinal) y se comparten, inmutables, entre peticiones.
+ * Las entidades Role se cargan al arrancar en un EnumMap.
+ */
+@Component
+public class RoleCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoleCatalog.class);
+
+    private static final RoleName[] ROLE_NAMES = RoleName.values();
+
+    private static final Map<RoleName, GrantedAuthority> AUTHORITIES = new EnumMap<>(RoleName.class);
+    private static final List<List<GrantedAuthority>> AUTHORITIES_BY_MASK = new ArrayList<>();
+    private static final List<Set<String>> NAMES_BY_MASK = new ArrayList<>();
+
+    static {
+        for (RoleName name : ROLE_NAMES) {
+            AUTHORITIES.put(name, new SimpleGrantedAuthority(name.name()));
+        }
+        for (int mask = 0; mask < (1 << ROLE_NAMES.length); mask++) {
+            List<GrantedAuthority> authorities = new ArrayList<>();
+            Set<String> names = new HashSet<>();
+            for (RoleName name : ROLE_NAMES) {
+                if ((mask & (1 << name.ordinal())) != 0) {
+                    authorities.add(AUTHORITIES.get(name));
+                    names.add(name.name());
+                }
+            }
+            AUTHORITIES_BY_MASK.add(List.copyOf(authorities));
+            NAMES_BY_MASK.add(Set.copyOf(names));
+        }
+    }
+
+    @Autowired
+    private RoleRepository roleRepository;
+
+    private volatile Map<RoleName, Role> roles = Collections.emptyMap();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+        logger.info("Catálogo de roles cargado: {}", roles.keySet());
+    }
+
+    /**
+     * Relee los roles de la BD (por si se crean o cambian fuera de la aplicación)
+     */
+    @Scheduled(fixedDelayString = "${app.security.role-catalog-refresh:300000}",
+            initialDelayString = "${app.security.role-catalog-refresh:300000}")
+    public void reload() {
+        Map<RoleName, Role> loaded = new EnumMap<>(RoleName.class);
+        for (Role role : roleRepository.findAll()) {
+            loaded.put(role.getName(), role);
+        }
+        this.roles = Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * Rol (desconectado de la sesión) por nombre; recarga una vez si falta
+     */
+    public Role getRole(RoleName name) {
+        Role role = roles.get(name);
+        if (role == null) {
+            reload();
+            role = roles.get(name);
+        }
+        return role;
+    }
+
+    /**
+     * Nombre del rol sin inicializar la entidad (sirve con proxies de getReferenceById)
+     */
+    public RoleName nameOf(Role role) {
+        for (Role known : roles.values()) {
+            if (known.getId().equals(role.getId())) {
+                return known.getName();
+            }
+        }
+        return role.getName();
+    }
+
+    public static GrantedAuthority authority(RoleName name) {
+        return AUTHORITIES.get(name);
+    }
+
+    public static List<GrantedAuthority> authoritiesOf(Collection<Role> roles) {
+        return AUTHORITIES_BY_MASK.get(mask(roles));
+    }
+
+    public static Set<String> roleNamesOf(Collection<Role> roles) {
+        return NAMES_BY_MASK.get(mask(roles));
+    }
+
+    public static Set<String> roleNamesOfEnums(Collection<RoleName> names) {
+        int mask = 0;
+        for (RoleName name : names) {
+            mask |= 1 << name.ordinal();
+        }
+        return NAMES_BY_MASK.get(mask);
+    }
+
+    /**
+     * Authorities a partir de los nombres de un JWT. Un nombre que no está en
+     * el enum no tiene instancia compartida y se crea aparte.
+     */
+    public static List<GrantedAuthority> authoritiesOfNames(Collection<String> names) {
+        int mask = maskOfNames(names);
+        if (mask >= 0) {
+            return AUTHORITIES_BY_MASK.get(mask);
+        }
+        List<GrantedAuthority> authorities = new ArrayList<>(names.size());
+        for (String name : names) {
+            authorities.add(new SimpleGrantedAuthority(name));
+        }
+        return Collections.unmodifiableList(authorities);
+    }
+
+    /**
+     * Set compartido equivalente a los nombres dados, o null si alguno es desconocido
+     */
+    public static Set<String> internNames(Collection<String> names) {
+        int mask = maskOfNames(names);
+        return mask >= 0 ? NAMES_BY_MASK.get(mask) : null;
+    }
+
+    private static int mask(Collection<Role> roles) {
+        int mask = 0;
+        for (Role role : roles) {
+            mask |= 1 << role.getName().ordinal();
+        }
+        return mask;
+    }
+
+    private static int maskOfNames(Collection<String> names) {
+        int mask = 0;
+        for (String name : names) {
+            int bit = -1;
+            for (RoleName roleName : ROLE_NAMES) {
+                if (roleName.name().equals(name)) {
+                    bit = roleName.ordinal();
+                    break;
+                }
+            }
+            if (bit < 0) {
+                return -1;
+            }
+            mask |= 1 << bit;
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,95 @@
+package com.security.security;
+
+import com.security.repository.DeletedUserRepository;
+import com.security.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tabla en memoria con la versión de seguridad vigente de cada usuario.
+ * Solo guarda los usuarios cuya versión es mayor que 0, así que se mantiene
+ * pequeña. Un JWT con una versión anterior a la de la tabla se rechaza.
+ * Los usuarios eliminados llegan a las demás instancias por su lápida en
+ * deleted_users, que se conserva mientras pueda quedar algún token vigente.
+ */
+@Component
+public class SecurityVersionTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SecurityVersionTable.class);
+
+    // Versión asignada a usuarios eliminados: ningún token puede alcanzarla
+    private static final int REVOKED = Integer.MAX_VALUE;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DeletedUserRepository deletedUserRepository;
+
+    @Value("${app.security.jwt.expiration:86400000}")
+    private long tokenLifetimeMs;
+
+    private final Map<Long, Integer> versions = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+        logger.info("Tabla de versiones de seguridad cargada: {} usuarios", versions.size());
+    }
+
+    /**
+     * Sincroniza con la BD los cambios hechos por otras instancias.
+     */
+    @Scheduled(fixedDelayString = "${app.security.jwt.security-version-refresh:30000}",
+            initialDelayString = "${app.security.jwt.security-version-refresh:30000}")
+    public void reload() {
+        List<Object[]> rows = userRepository.findSecurityVersions();
+        for (Object[] row : rows) {
+            update((Long) row[0], ((Number) row[1]).intValue());
+        }
+        // La fila del usuario ya no existe: sin lápida no habría nada que recargar
+        LocalDateTime since = LocalDateTime.now().minusNanos(tokenLifetimeMs * 1_000_000L);
+        for (Long userId : deletedUserRepository.findUserIdsDeletedSince(since)) {
+            versions.put(userId, REVOKED);
+        }
+    }
+
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        Integer current = versions.get(userId);
+        return current == null || tokenVersion >= current;
+    }
+
+    public void update(Long userId, int version) {
+        versions.merge(userId, version, Math::max);
+    }
+
+    /**
+     * Rechaza todos los tokens del usuario en este nodo cuando la transacción
+     * actual confirma (la lápida en BD la escribe quien elimina al usuario)
+     */
+    public void revoke(Long userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.put(userId, REVOKED);
+                }
+            });
+        } else {
+            versions.put(userId, REVOKED);
+        }
+    }
+}
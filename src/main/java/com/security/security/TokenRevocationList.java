@@ -0,0 +1,85 @@
+package com.security.security;
+
+import com.security.repository.ActiveSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Lista en memoria de jti revocados. Los jti se agrupan en cubos por minuto de
+ * expiración: cuando un cubo vence se descarta entero, porque esos tokens ya
+ * no serían aceptados de todas formas. La consulta es un contains() sobre un
+ * set concurrente, sin acceso a la BD.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private static final long BUCKET_MS = 60000;
+
+    @Autowired
+    private ActiveSessionRepository activeSessionRepository;
+
+    private final Set<String> revoked = ConcurrentHashMap.newKeySet();
+
+    // minuto (epoch) a partir del cual todos los tokens del cubo han expirado -> jti
+    private final ConcurrentSkipListMap<Long, Set<String>> buckets = new ConcurrentSkipListMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        syncFromDatabase();
+        logger.info("Lista de revocación cargada: {} tokens", revoked.size());
+    }
+
+    /**
+     * Incorpora las revocaciones hechas por otras instancias.
+     */
+    @Scheduled(fixedDelayString = "${app.security.jwt.revocation-sync:30000}",
+            initialDelayString = "${app.security.jwt.revocation-sync:30000}")
+    public void syncFromDatabase() {
+        List<Object[]> rows = activeSessionRepository.findRevokedTokenIds(LocalDateTime.now());
+        for (Object[] row : rows) {
+            LocalDateTime expiresAt = (LocalDateTime) row[1];
+            revoke((String) row[0], Date.from(expiresAt.atZone(ZoneId.systemDefault()).toInstant()));
+        }
+    }
+
+    public void revoke(String tokenId, Date expiration) {
+        long bucket = Math.floorDiv(expiration.getTime(), BUCKET_MS) + 1;
+        buckets.computeIfAbsent(bucket, key -> ConcurrentHashMap.newKeySet()).add(tokenId);
+        revoked.add(tokenId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        return tokenId != null && !revoked.isEmpty() && revoked.contains(tokenId);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    @Scheduled(fixedDelay = BUCKET_MS)
+    public void purgeExpired() {
+        long currentBucket = Math.floorDiv(System.currentTimeMillis(), BUCKET_MS);
+        Iterator<Map.Entry<Long, Set<String>>> expired = buckets.headMap(currentBucket, true).entrySet().iterator();
+        while (expired.hasNext()) {
+            revoked.removeAll(expired.next().getValue());
+            expired.remove();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.security.security;
+
+import com.security.enums.TwoFactorType;
+
+import java.time.Instant;
+
+/**
+ * Contenido descifrado de un challenge 2FA: quién pasó la contraseña, con qué
+ * método debe completar el login, hasta cuándo y (si ya se envió) el HMAC del
+ * código entregado.
+ */
+public final class TwoFactorChallenge {
+
+    private final String id;
+    private final Long userId;
+    private final TwoFactorType method;
+    private final int securityVersion;
+    private final Instant expiresAt;
+    private final byte[] codeHash;
+
+    TwoFactorChallenge(String id, Long userId, TwoFactorType method, int securityVersion, Instant expiresAt,
+            byte[] codeHash) {
+        this.id = id;
+        this.userId = userId;
+        this.method = method;
+        this.securityVersion = securityVersion;
+        this.expiresAt = expiresAt;
+        this.codeHash = codeHash;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public TwoFactorType getMethod() {
+        return method;
+    }
+
+    public int getSecurityVersion() {
+        return securityVersion;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean hasCode() {
+        return codeHash != null;
+    }
+
+    byte[] getCodeHash() {
+        return codeHash;
+    }
+}
@@ -0,0 +1,186 @@
+package com.security.security;
+
+import com.security.enums.TwoFactorType;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * Challenges 2FA sin estado: el paso intermedio del login viaja cifrado y
+ * autenticado (AES-256-GCM) en el propio token, así que cualquier instancia
+ * con el mismo secreto puede completar el login sin store compartido ni BD.
+ * El código enviado solo va como HMAC-SHA256 ligado al id del challenge.
+ */
+@Component
+public class TwoFactorChallengeCodec {
+
+    private static final byte VERSION = 1;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int ID_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+    private static final byte[] AAD = "2fa-challenge".getBytes(StandardCharsets.US_ASCII);
+
+    // Por defecto se deriva del secreto JWT, con claves distintas para cifrar y para el HMAC
+    @Value("${app.security.two-factor.challenge.secret:${app.security.jwt.secret}}")
+    private String secret;
+
+    @Value("${app.security.two-factor.challenge.ttl:300000}")
+    private long ttlMs;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private SecretKeySpec encryptionKey;
+    private SecretKeySpec codeKey;
+
+    @PostConstruct
+    public void init() {
+        byte[] master = secret.getBytes(StandardCharsets.UTF_8);
+        this.encryptionKey = new SecretKeySpec(hmac(master, "2fa-challenge-encryption"), "AES");
+        this.codeKey = new SecretKeySpec(hmac(master, "2fa-challenge-code"), "HmacSHA256");
+    }
+
+    /**
+     * Challenge recién emitido tras la contraseña correcta, aún sin código
+     */
+    public String issue(Long userId, TwoFactorType method, int securityVersion) {
+        byte[] id = new byte[ID_LENGTH];
+        secureRandom.nextBytes(id);
+        return seal(id, userId, method, securityVersion, Instant.now().plusMillis(ttlMs), null);
+    }
+
+    /**
+     * Challenge que liga el código que se acaba de enviar por email o SMS. Conserva
+     * el id y la caducidad del original: reenviar no alarga el plazo ni reinicia
+     * los intentos, que se cuentan por id.
+     */
+    public String issueWithCode(TwoFactorChallenge challenge, TwoFactorType method, String code) {
+        return seal(Base64.getUrlDecoder().decode(challenge.getId()), challenge.getUserId(), method,
+                challenge.getSecurityVersion(), challenge.getExpiresAt(), code);
+    }
+
+    /**
+     * Descifra y valida el challenge; null si está manipulado, mal formado o caducado
+     */
+    public TwoFactorChallenge open(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            byte[] raw = Base64.getUrlDecoder().decode(token);
+            if (raw.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, raw, 0, IV_LENGTH));
+            cipher.updateAAD(AAD);
+            ByteBuffer payload = ByteBuffer.wrap(cipher.doFinal(raw, IV_LENGTH, raw.length - IV_LENGTH));
+
+            if (payload.get() != VERSION) {
+                return null;
+            }
+            byte[] id = new byte[ID_LENGTH];
+            payload.get(id);
+            long userId = payload.getLong();
+            TwoFactorType method = TwoFactorType.values()[payload.get()];
+            int securityVersion = payload.getInt();
+            Instant expiresAt = Instant.ofEpochSecond(payload.getLong());
+            byte[] codeHash = null;
+            if (payload.get() == 1) {
+                codeHash = new byte[HASH_LENGTH];
+                payload.get(codeHash);
+            }
+
+            if (!Instant.now().isBefore(expiresAt)) {
+                return null;
+            }
+            return new TwoFactorChallenge(Base64.getUrlEncoder().withoutPadding().encodeToString(id), userId,
+                    method, securityVersion, expiresAt, codeHash);
+        } catch (GeneralSecurityException | IllegalArgumentException | BufferUnderflowException
+                | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compara en tiempo constante el código recibido con el ligado al challenge
+     */
+    public boolean matchesCode(TwoFactorChallenge challenge, String code) {
+        if (!challenge.hasCode() || code == null) {
+            return false;
+        }
+        byte[] id = Base64.getUrlDecoder().decode(challenge.getId());
+        return MessageDigest.isEqual(challenge.getCodeHash(), codeHash(id, code));
+    }
+
+    public Duration getTtl() {
+        return Duration.ofMillis(ttlMs);
+    }
+
+    private String seal(byte[] id, Long userId, TwoFactorType method, int securityVersion, Instant expiresAt,
+            String code) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + ID_LENGTH + 8 + 1 + 4 + 8 + 1 + HASH_LENGTH);
+        payload.put(VERSION)
+                .put(id)
+                .putLong(userId)
+                .put((byte) method.ordinal())
+                .putInt(securityVersion)
+                .putLong(expiresAt.getEpochSecond());
+        if (code != null) {
+            payload.put((byte) 1).put(codeHash(id, code));
+        } else {
+            payload.put((byte) 0);
+        }
+
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            secureRandom.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.updateAAD(AAD);
+            byte[] sealed = cipher.doFinal(payload.array(), 0, payload.position());
+
+            byte[] token = new byte[IV_LENGTH + sealed.length];
+            System.arraycopy(iv, 0, token, 0, IV_LENGTH);
+            System.arraycopy(sealed, 0, token, IV_LENGTH, sealed.length);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not seal 2FA challenge", e);
+        }
+    }
+
+    private byte[] codeHash(byte[] id, String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(codeKey);
+            mac.update(id);
+            return mac.doFinal(code.trim().getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String label) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(label.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
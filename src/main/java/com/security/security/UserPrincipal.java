@@ -2,46 +2,49 @@ package com.security.security;
 
 import com.security.entity.User;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
 
-public class UserPrincipal implements UserDetails {
-
-    private Long id;
-    private String firstName;
-    private String lastName;
-    private String email;
-    private String password;
-    private Collection<? extends GrantedAuthority> authorities;
-    private boolean enabled;
-    private boolean accountNonExpired;
-    private boolean accountNonLocked;
-    private boolean credentialsNonExpired;
+/**
+ * Instantánea inmutable del usuario: se comparte entre peticiones desde
+ * UserPrincipalCache.
+ */
+public final class UserPrincipal implements UserDetails {
+
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String password;
+    private final Collection<? extends GrantedAuthority> authorities;
+    private final boolean enabled;
+    private final boolean accountNonExpired;
+    private final boolean accountNonLocked;
+    private final boolean credentialsNonExpired;
+    private final int securityVersion;
 
     public UserPrincipal(Long id, String firstName, String lastName, String email, String password,
             Collection<? extends GrantedAuthority> authorities, boolean enabled,
-            boolean accountNonExpired, boolean accountNonLocked, boolean credentialsNonExpired) {
+            boolean accountNonExpired, boolean accountNonLocked, boolean credentialsNonExpired,
+            int securityVersion) {
         this.id = id;
         this.firstName = firstName;
         this.lastName = lastName;
         this.email = email;
         this.password = password;
-        this.authorities = authorities;
+        this.authorities = List.copyOf(authorities);
         this.enabled = enabled;
         this.accountNonExpired = accountNonExpired;
         this.accountNonLocked = accountNonLocked;
         this.credentialsNonExpired = credentialsNonExpired;
+        this.securityVersion = securityVersion;
     }
 
     public static UserPrincipal create(User user) {
-        // CORREGIDO: Usar enum name()
-        List<GrantedAuthority> authorities = user.getRoles().stream()
-                .map(role -> new SimpleGrantedAuthority(role.getName().name()))
-                .collect(Collectors.toList());
+        // Authorities compartidas del catálogo, sin crear objetos por petición
+        List<GrantedAuthority> authorities = RoleCatalog.authoritiesOf(user.getRoles());
 
         return new UserPrincipal(
                 user.getId(),
@@ -53,7 +56,29 @@ public class UserPrincipal implements UserDetails {
                 user.getEnabled(),
                 user.getAccountNonExpired(),
                 user.getAccountNonLocked(),
-                user.getCredentialsNonExpired());
+                user.getCredentialsNonExpired(),
+                user.getSecurityVersion());
+    }
+
+    /**
+     * Construye el principal solo con los claims del JWT, sin consultar la BD.
+     * El token ya fue validado contra la tabla de versiones de seguridad.
+     */
+    public static UserPrincipal fromToken(VerifiedToken token) {
+        List<GrantedAuthority> authorities = RoleCatalog.authoritiesOfNames(token.getRoles());
+
+        return new UserPrincipal(
+                token.getUserId(),
+                null,
+                null,
+                token.getEmail(),
+                null,
+                authorities,
+                true,
+                true,
+                true,
+                true,
+                token.getSecurityVersion());
     }
 
     // UserDetails implementation
@@ -108,4 +133,8 @@ public class UserPrincipal implements UserDetails {
     public String getEmail() {
         return email;
     }
+
+    public int getSecurityVersion() {
+        return securityVersion;
+    }
 }
\ No newline at end of file
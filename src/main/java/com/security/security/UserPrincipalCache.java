@@ -0,0 +1,97 @@
+package com.security.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.security.entity.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Caché acotada (tamaño y TTL) de UserPrincipal inmutables, por id y por email.
+ * Las escrituras sobre el usuario la invalidan al momento y de nuevo tras el
+ * commit, para que una carga concurrente no deje una copia anterior al cambio.
+ */
+@Component
+public class UserPrincipalCache {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.ttl:300000}")
+    private long ttlMs;
+
+    private Cache<Long, UserPrincipal> byId;
+    private Cache<String, UserPrincipal> byEmail;
+
+    @PostConstruct
+    public void init() {
+        this.byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        this.byEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        // cache.gets / cache.puts / cache.load.duration, de donde sale el hit ratio y la latencia de carga
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "user-principals.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, byEmail, "user-principals.by-email");
+    }
+
+    public UserPrincipal getById(Long id, Function<Long, UserPrincipal> loader) {
+        return byId.get(id, loader);
+    }
+
+    public UserPrincipal getByEmail(String email, Function<String, UserPrincipal> loader) {
+        return byEmail.get(normalize(email), key -> loader.apply(email));
+    }
+
+    /**
+     * Invalida las entradas del usuario por id y por email
+     */
+    public void invalidate(User user) {
+        invalidate(user.getId(), user.getEmail());
+    }
+
+    public void invalidate(Long userId, String email) {
+        evict(userId, email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(userId, email);
+                }
+            });
+        }
+    }
+
+    private void evict(Long userId, String email) {
+        if (userId != null) {
+            byId.invalidate(userId);
+        }
+        if (email != null) {
+            byEmail.invalidate(normalize(email));
+        }
+    }
+
+    private String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,88 @@
+package com.security.security;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Resultado inmutable de verificar un JWT una sola vez: claims ya decodificados
+ * o el motivo por el que el token fue rechazado.
+ */
+public final class VerifiedToken {
+
+    public enum FailureReason {
+        INVALID_SIGNATURE,
+        MALFORMED,
+        EXPIRED,
+        UNSUPPORTED,
+        EMPTY
+    }
+
+    private final String tokenId;
+    private final Long userId;
+    private final String email;
+    private final Set<String> roles;
+    private final Date issuedAt;
+    private final Date expiration;
+    private final int securityVersion;
+    private final FailureReason failureReason;
+
+    private VerifiedToken(String tokenId, Long userId, String email, Set<String> roles, Date issuedAt, Date expiration,
+            int securityVersion, FailureReason failureReason) {
+        this.tokenId = tokenId;
+        this.userId = userId;
+        this.email = email;
+        this.roles = roles;
+        this.issuedAt = issuedAt;
+        this.expiration = expiration;
+        this.securityVersion = securityVersion;
+        this.failureReason = failureReason;
+    }
+
+    public static VerifiedToken valid(String tokenId, Long userId, String email, Set<String> roles,
+            Date issuedAt, Date expiration, int securityVersion) {
+        return new VerifiedToken(tokenId, userId, email,
+                roles != null ? Collections.unmodifiableSet(roles) : Collections.emptySet(),
+                issuedAt, expiration, securityVersion, null);
+    }
+
+    public static VerifiedToken invalid(FailureReason failureReason) {
+        return new VerifiedToken(null, null, null, Collections.emptySet(), null, null, 0, failureReason);
+    }
+
+    public boolean isValid() {
+        return failureReason == null;
+    }
+
+    public String getTokenId() {
+        return tokenId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Set<String> getRoles() {
+        return roles;
+    }
+
+    public Date getIssuedAt() {
+        return issuedAt;
+    }
+
+    public Date getExpiration() {
+        return expiration;
+    }
+
+    public int getSecurityVersion() {
+        return securityVersion;
+    }
+
+    public FailureReason getFailureReason() {
+        return failureReason;
+    }
+}
@@ -11,35 +11,55 @@ import com.security.dto.response.JwtAuthResponse;
 import com.security.dto.response.UserResponse;
 import com.security.entity.Role;
 import com.security.entity.User;
+import com.security.entity.ActiveSession;
 import com.security.exception.BadRequestException;
+import com.security.exception.ServiceBusyException;
+import com.security.exception.TooManyRequestsException;
+import com.security.repository.ActiveSessionRepository;
 import com.security.repository.UserRepository;
 import com.security.security.JwtTokenProvider;
-import com.security.security.UserPrincipal;
+import com.security.security.LoginThrottle;
+import com.security.security.RoleCatalog;
+import com.security.security.SecurityVersionTable;
+import com.security.security.UserPrincipalCache;
+import com.security.security.TokenRevocationList;
+import com.security.security.VerifiedToken;
+import com.security.security.VerifiedTokenCache;
 import com.warrenstrange.googleauth.GoogleAuthenticator;
 import com.warrenstrange.googleauth.GoogleAuthenticatorKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.authentication.LockedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Base64;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.UUID;
 
 @Service
 @Transactional
 public class AuthService {
 
-    @Autowired
-    private AuthenticationManager authenticationManager;
-
     @Autowired
     private UserService userService;
 
@@ -52,9 +72,86 @@ public class AuthService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private SecurityVersionTable securityVersionTable;
+
+    @Autowired
+    private ActiveSessionRepository activeSessionRepository;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
     @Autowired
     private VerificationService verificationService; // ← AÑADIR esta inyección
 
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private UserStatistics userStatistics;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private LoginAttemptRecorder loginAttemptRecorder;
+
+    @Value("${app.security.password-hashing.bcrypt.legacy-strength:10}")
+    private int legacyBcryptStrength;
+
+    @Value("${app.security.jwt.secret}")
+    private String jwtSecret;
+
+    // Hashes de una contraseña aleatoria para emails desconocidos: uno con el encoder
+    // actual y otro con el coste heredado, que es el que aún tienen los usuarios sin rehashear
+    private String dummyPasswordHash;
+    private String legacyDummyPasswordHash;
+
+    // Usuarios con hash heredado, en tantos por mil
+    private volatile int legacyHashPermille;
+
+    @PostConstruct
+    public void initDummyPasswordHash() {
+        dummyPasswordHash = passwordEncoder.encode(UUID.randomUUID().toString());
+        legacyDummyPasswordHash = new BCryptPasswordEncoder(legacyBcryptStrength).encode(UUID.randomUUID().toString());
+        refreshLegacyHashShare();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.password-hashing.legacy-share-refresh:3600000}",
+            initialDelayString = "${app.security.password-hashing.legacy-share-refresh:3600000}")
+    public void refreshLegacyHashShare() {
+        long total = userRepository.count();
+        legacyHashPermille = total == 0 ? 0 : (int) (userRepository.countLegacyPasswordHashes() * 1000 / total);
+    }
+
+    /**
+     * Hash ficticio para un email desconocido. Cada email cae siempre en el
+     * mismo (clave secreta + email) y la proporción sigue a la de usuarios con
+     * hash heredado, así el tiempo de un email no dice si la cuenta existe.
+     */
+    private String dummyPasswordHashFor(String email) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    (jwtSecret + ":" + email.toLowerCase(Locale.ROOT)).getBytes(StandardCharsets.UTF_8));
+            int bucket = Math.floorMod(((digest[0] & 0xff) << 8) | (digest[1] & 0xff), 1000);
+            return bucket < legacyHashPermille ? legacyDummyPasswordHash : dummyPasswordHash;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public UserResponse registerUser(RegisterRequest registerRequest) {
         User user = userService.createUser(registerRequest);
 
@@ -64,62 +161,146 @@ public class AuthService {
         return convertToUserResponse(user);
     }
 
-    public JwtAuthResponse authenticateUser(LoginRequest loginRequest) {
-        // First authenticate with email and password
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        loginRequest.getEmail(),
-                        loginRequest.getPassword()));
+    /**
+     * Login en una sola pasada: una carga del usuario y una verificación de hash
+     * por intento. Un email desconocido se verifica contra un hash ficticio de
+     * uno de los costes en uso, para que el tiempo de respuesta no revele qué
+     * cuentas existen.
+     * Sin transacción envolvente: el hash no retiene una conexión a la BD.
+     * Antes de nada se consulta el limitador por email e IP (429 sin hashear).
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public JwtAuthResponse authenticateUser(LoginRequest loginRequest, String clientIp) {
+        Timer.Sample total = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            try {
+                loginThrottle.checkAllowed(loginRequest.getEmail(), clientIp);
+            } catch (TooManyRequestsException e) {
+                outcome = "throttled";
+                recordAttempt(loginRequest, clientIp, false, "THROTTLED");
+                throw e;
+            }
 
-        UserPrincipal userPrincipal = (UserPrincipal) authentication.getPrincipal();
-        User user = userService.getUserById(userPrincipal.getId());
+            Timer.Sample stage = Timer.start(meterRegistry);
+            User user = userService.findByEmailWithRoles(loginRequest.getEmail()).orElse(null);
+            stage.stop(stageTimer("load-user"));
+
+            stage = Timer.start(meterRegistry);
+            boolean passwordMatches = passwordEncoder.matches(loginRequest.getPassword(),
+                    user != null ? user.getPassword() : dummyPasswordHashFor(loginRequest.getEmail()));
+            stage.stop(stageTimer("verify-password"));
+
+            if (user == null || !passwordMatches) {
+                outcome = "bad-credentials";
+                recordAttempt(loginRequest, clientIp, false, "BAD_CREDENTIALS");
+                // Límite de fallos alcanzado: bloqueo temporal de la cuenta
+                if (loginThrottle.recordFailure(loginRequest.getEmail(), clientIp) && user != null) {
+                    userService.lockAccount(user.getId());
+                }
+                throw new BadCredentialsException("Credenciales inválidas");
+            }
 
-        // Check if user is enabled
-        if (!user.getEnabled()) {
-            throw new BadRequestException("User account is not verified. Please check your email.");
-        }
+            // El estado de la cuenta solo se comprueba con la contraseña correcta
+            if (loginThrottle.isLocked(user)) {
+                outcome = "locked";
+                recordAttempt(loginRequest, clientIp, false, "ACCOUNT_LOCKED");
+                throw new LockedException("La cuenta está bloqueada temporalmente");
+            }
+            if (!Boolean.TRUE.equals(user.getAccountNonLocked())) {
+                // El bloqueo por intentos fallidos ya caducó: se levanta al primer login correcto
+                userService.unlockAccount(user.getId());
+            }
+            if (!user.isEnabled()) {
+                outcome = "disabled";
+                recordAttempt(loginRequest, clientIp, false, "ACCOUNT_DISABLED");
+                throw new DisabledException("La cuenta no está verificada. Revisa tu email.");
+            }
+
+            recordAttempt(loginRequest, clientIp, true, null);
+            loginThrottle.recordSuccess(loginRequest.getEmail());
 
-        // Check if 2FA is enabled
-        if (user.getTwoFactorEnabled()) {
-            if (loginRequest.getTwoFactorToken() == null || loginRequest.getTwoFactorToken().isEmpty()) {
-                // Return response indicating 2FA is required
+            stage = Timer.start(meterRegistry);
+            userService.upgradePasswordIfNeeded(user, loginRequest.getPassword());
+            stage.stop(stageTimer("rehash"));
+
+            UserResponse userResponse = convertToUserResponse(user);
+
+            // Google Authenticator activado: se pide el segundo factor y NO se emite token
+            if (Boolean.TRUE.equals(user.getGoogleAuthEnabled())) {
+                outcome = "two-factor-required";
                 JwtAuthResponse response = new JwtAuthResponse();
                 response.setTwoFactorRequired(true);
-                response.setUser(convertToUserResponse(user));
+                response.setChallengeToken(twoFactorService.issueLoginChallenge(user));
+                response.setUser(userResponse);
                 return response;
             }
 
-            // Verify 2FA token
-            if (!twoFactorService.verifyToken(user.getId(), loginRequest.getTwoFactorToken())) {
-                throw new BadRequestException("Invalid two-factor authentication token.");
-            }
+            stage = Timer.start(meterRegistry);
+            String jwt = tokenProvider.generateTokenFromUserId(user.getId(), user.getEmail(),
+                    RoleCatalog.roleNamesOf(user.getRoles()), user.getSecurityVersion());
+            JwtAuthResponse response = new JwtAuthResponse(jwt, tokenProvider.getExpirationTime(), userResponse);
+            response.setRefreshToken(refreshTokenService.createRefreshToken(user));
+            stage.stop(stageTimer("issue-tokens"));
+
+            outcome = "success";
+            return response;
+        } catch (ServiceBusyException e) {
+            outcome = "busy";
+            throw e;
+        } finally {
+            total.stop(Timer.builder("auth.login").tag("outcome", outcome).register(meterRegistry));
         }
+    }
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = tokenProvider.generateToken(authentication);
-
-        UserResponse userResponse = convertToUserResponse(user);
+    // Contadores en memoria al momento; la fila en login_attempts, en diferido
+    private void recordAttempt(LoginRequest loginRequest, String clientIp, boolean successful, String failureReason) {
+        userStatistics.recordLogin(successful);
+        loginAttemptRecorder.record(loginRequest.getEmail(), clientIp, successful, failureReason);
+    }
 
-        return new JwtAuthResponse(jwt, tokenProvider.getExpirationTime(), userResponse);
+    private Timer stageTimer(String stage) {
+        return Timer.builder("auth.login.stage").tag("stage", stage).register(meterRegistry);
     }
 
-    public JwtAuthResponse refreshToken(String token) {
-        if (tokenProvider.validateToken(token)) {
-            Long userId = tokenProvider.getUserIdFromJWT(token);
-            User user = userService.getUserById(userId);
+    /**
+     * Rota el refresh token opaco y emite un access token nuevo
+     */
+    public JwtAuthResponse refreshToken(String refreshToken) {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+        User user = rotation.getUser();
 
-            // CORREGIDO: Usar enum name()
-            Set<String> roles = user.getRoles().stream()
-                    .map(role -> role.getName().name())
-                    .collect(Collectors.toSet());
+        Set<String> roles = RoleCatalog.roleNamesOf(user.getRoles());
 
-            String newToken = tokenProvider.generateTokenFromUserId(userId, user.getEmail(), roles);
-            UserResponse userResponse = convertToUserResponse(user);
+        String newToken = tokenProvider.generateTokenFromUserId(user.getId(), user.getEmail(), roles,
+                user.getSecurityVersion());
+        UserResponse userResponse = convertToUserResponse(user);
 
-            return new JwtAuthResponse(newToken, tokenProvider.getExpirationTime(), userResponse);
+        JwtAuthResponse response = new JwtAuthResponse(newToken, tokenProvider.getExpirationTime(), userResponse);
+        response.setRefreshToken(rotation.getRefreshToken());
+        return response;
+    }
+
+    /**
+     * Revoca el token: queda marcado en active_sessions y en la lista en memoria
+     */
+    public void logout(String token, String refreshToken) {
+        VerifiedToken verified = tokenProvider.verifyToken(token);
+        if (!verified.isValid() || verified.getTokenId() == null) {
+            throw new BadRequestException("Invalid token");
         }
 
-        throw new BadRequestException("Invalid refresh token");
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(verified.getExpiration().toInstant(),
+                ZoneId.systemDefault());
+        ActiveSession session = activeSessionRepository.findByJwtTokenId(verified.getTokenId())
+                .orElseGet(() -> new ActiveSession(userRepository.getReferenceById(verified.getUserId()),
+                        verified.getTokenId(), null, null, expiresAt));
+        session.setRevoked(true);
+        activeSessionRepository.save(session);
+
+        tokenRevocationList.revoke(verified.getTokenId(), verified.getExpiration());
+        verifiedTokenCache.invalidate(token);
+        refreshTokenService.revoke(refreshToken);
     }
 
     public void verifyEmail(String token) {
@@ -152,11 +333,7 @@ public class AuthService {
         userResponse.setCreatedAt(user.getCreatedAt());
         userResponse.setUpdatedAt(user.getUpdatedAt());
 
-        // CORREGIDO: Usar enum name()
-        Set<String> roleNames = user.getRoles().stream()
-                .map(role -> role.getName().name())
-                .collect(Collectors.toSet());
-        userResponse.setRoles(roleNames);
+        userResponse.setRoles(RoleCatalog.roleNamesOf(user.getRoles()));
 
         userResponse.setGoogleAuthEnabled(user.getGoogleAuthEnabled());
         userResponse.setSmsEnabled(user.getSmsEnabled());
@@ -165,10 +342,15 @@ public class AuthService {
         return userResponse;
     }
 
+    @Transactional(readOnly = true)
     public UserResponse getUserFromToken(String token) {
-        Long userId = tokenProvider.getUserIdFromJWT(token);
-        User user = userRepository.findById(userId).orElse(null);
-        if (user == null)
+        VerifiedToken verified = verifiedTokenCache.getOrVerify(token);
+        if (!verified.isValid() || tokenRevocationList.isRevoked(verified.getTokenId())
+                || !securityVersionTable.isCurrent(verified.getUserId(), verified.getSecurityVersion()))
+            return null;
+        User user = userRepository.findWithRolesById(verified.getUserId()).orElse(null);
+        // Con la fila ya cargada, su versión es la autoritativa (la tabla se sincroniza cada 30 s)
+        if (user == null || verified.getSecurityVersion() < user.getSecurityVersion())
             return null;
         return convertToUserResponse(user);
     }
@@ -205,6 +387,7 @@ public class AuthService {
         }
     }
 
+    @Transactional(readOnly = true)
     public boolean verifyGoogleAuthCode(Long userId, String code) {
         User user = userRepository.findById(userId).orElse(null);
         if (user == null || user.getGoogleAuthSecret() == null)
@@ -218,6 +401,7 @@ public class AuthService {
         if (user != null) {
             user.setGoogleAuthEnabled(true); // Debes tener este campo en la entidad User
             userRepository.save(user);
+            userPrincipalCache.invalidate(user);
         }
     }
 
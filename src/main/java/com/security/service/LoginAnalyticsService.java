@@ -0,0 +1,105 @@
+package com.security.service;
+
+import com.security.enums.RollupDimension;
+import com.security.exception.BadRequestException;
+import com.security.repository.LoginAttemptRollupRepository;
+import com.security.repository.projection.HourlyLoginOutcome;
+import com.security.repository.projection.LoginOutcomeByValue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Consultas del panel de seguridad sobre los agregados horarios de login
+ * (login_attempt_rollups): nunca recorre las filas de login_attempts.
+ */
+@Service
+@Transactional(readOnly = true)
+public class LoginAnalyticsService {
+
+    private static final Duration MAX_RANGE = Duration.ofDays(31);
+    private static final int MAX_TOP = 100;
+
+    @Autowired
+    private LoginAttemptRollupRepository rollupRepository;
+
+    /**
+     * Éxitos y fallos por hora en [from, to). Las horas sin intentos aparecen a cero.
+     * Para ALL el valor se ignora.
+     */
+    public List<HourlyLoginOutcome> hourly(RollupDimension dimension, String value, LocalDateTime from,
+            LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        validateRange(start, to);
+
+        Map<LocalDateTime, HourlyLoginOutcome> byHour = new HashMap<>();
+        for (HourlyLoginOutcome hour : rollupRepository.findHourly(dimension, normalizeValue(dimension, value),
+                start, to)) {
+            byHour.put(hour.hour(), hour);
+        }
+
+        List<HourlyLoginOutcome> series = new ArrayList<>();
+        for (LocalDateTime hour = start; hour.isBefore(to); hour = hour.plusHours(1)) {
+            HourlyLoginOutcome outcome = byHour.get(hour);
+            series.add(outcome != null ? outcome : new HourlyLoginOutcome(hour, 0L, 0L));
+        }
+        return series;
+    }
+
+    /**
+     * Las IPs o dominios con más fallos (o éxitos) en [from, to)
+     */
+    public List<LoginOutcomeByValue> top(RollupDimension dimension, LocalDateTime from, LocalDateTime to,
+            int limit, boolean byFailures) {
+        if (dimension == RollupDimension.ALL) {
+            throw new BadRequestException("Top-N requires dimension IP or EMAIL_DOMAIN");
+        }
+        validateRange(from, to);
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_TOP)));
+        return byFailures
+                ? rollupRepository.findTopByFailed(dimension, from, to, page)
+                : rollupRepository.findTopBySuccessful(dimension, from, to, page);
+    }
+
+    /**
+     * Totales de éxitos y fallos en [from, to)
+     */
+    public LoginOutcomeByValue totals(LocalDateTime from, LocalDateTime to) {
+        validateRange(from, to);
+        long successful = 0;
+        long failed = 0;
+        for (HourlyLoginOutcome hour : rollupRepository.findHourly(RollupDimension.ALL, "",
+                from.truncatedTo(ChronoUnit.HOURS), to)) {
+            successful += hour.successful();
+            failed += hour.failed();
+        }
+        return new LoginOutcomeByValue("", successful, failed);
+    }
+
+    private void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new BadRequestException("'from' must be before 'to'");
+        }
+        if (Duration.between(from, to).compareTo(MAX_RANGE) > 0) {
+            throw new BadRequestException("Range cannot exceed " + MAX_RANGE.toDays() + " days");
+        }
+    }
+
+    // Mismo formato con el que LoginAttemptRecorder guarda cada dimensión
+    private String normalizeValue(RollupDimension dimension, String value) {
+        if (dimension == RollupDimension.ALL || value == null) {
+            return "";
+        }
+        return dimension == RollupDimension.EMAIL_DOMAIN ? value.trim().toLowerCase(Locale.ROOT) : value.trim();
+    }
+}
@@ -0,0 +1,376 @@
+package com.security.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.security.dto.response.LoginAttemptResponse;
+import com.security.entity.LoginAttempt;
+import com.security.enums.RollupDimension;
+import com.security.repository.LoginAttemptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registro write-behind de intentos de login. El login solo encola el evento
+ * (cola sin bloqueos y acotada: si está llena el evento se descarta y se
+ * cuenta); un hilo aparte lo persiste con INSERT multi-fila cuando se junta un
+ * lote o pasa flush-interval, y en la misma transacción suma el lote a los
+ * agregados horarios (login_attempt_rollups). Los últimos intentos de cada
+ * email se sirven desde un buffer circular en memoria.
+ */
+@Component
+public class LoginAttemptRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginAttemptRecorder.class);
+
+    private static final String INSERT_PREFIX =
+            "INSERT INTO login_attempts (email, ip_address, successful, failure_reason, attempt_time) VALUES ";
+
+    // Upsert de los agregados horarios sobre uk_login_attempt_rollups_bucket (MySQL / H2 en MODE=MySQL)
+    private static final String ROLLUP_PREFIX =
+            "INSERT INTO login_attempt_rollups (bucket_start, dimension, dimension_value, successful, failed) VALUES ";
+    // Alias de fila (MySQL 8.0.19+): VALUES(col) en ON DUPLICATE KEY UPDATE está obsoleto
+    private static final String ROLLUP_SUFFIX =
+            " AS new ON DUPLICATE KEY UPDATE successful = successful + new.successful, failed = failed + new.failed";
+    // H2 en MODE=MySQL (perfil local) solo entiende la forma antigua
+    private static final String H2_ROLLUP_SUFFIX =
+            " ON DUPLICATE KEY UPDATE successful = successful + VALUES(successful), failed = failed + VALUES(failed)";
+
+    // Orden fijo de las claves: dos nodos que actualizan las mismas filas las bloquean en el mismo orden
+    private static final Comparator<RollupKey> ROLLUP_ORDER = Comparator.comparing(RollupKey::hour)
+            .thenComparing(RollupKey::dimension)
+            .thenComparing(RollupKey::value);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LoginAttemptRepository loginAttemptRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.security.login-attempts.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${app.security.login-attempts.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.security.login-attempts.recent-per-email:10}")
+    private int recentPerEmail;
+
+    @Value("${app.security.login-attempts.max-tracked-emails:50000}")
+    private long maxTrackedEmails;
+
+    private final ConcurrentLinkedQueue<Attempt> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Encolados y aún no escritos, para que UserStatistics pueda reconciliar
+    private final AtomicLong pendingSuccessful = new AtomicLong();
+    private final AtomicLong pendingFailed = new AtomicLong();
+
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(
+            new CustomizableThreadFactory("login-attempt-writer-"));
+
+    private Cache<String, RecentAttempts> recentByEmail;
+
+    private TransactionTemplate transactionTemplate;
+
+    private Counter droppedCounter;
+    private Counter writtenCounter;
+    private Counter failedCounter;
+    private Timer flushTimer;
+    private String rollupSuffix;
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recentByEmail = Caffeine.newBuilder()
+                .maximumSize(maxTrackedEmails)
+                .expireAfterAccess(1, TimeUnit.DAYS)
+                .build();
+
+        Gauge.builder("login.attempts.queue.size", queued, AtomicInteger::get).register(meterRegistry);
+        this.droppedCounter = Counter.builder("login.attempts.dropped").register(meterRegistry);
+        this.writtenCounter = Counter.builder("login.attempts.written").register(meterRegistry);
+        this.failedCounter = Counter.builder("login.attempts.write.failed").register(meterRegistry);
+        this.flushTimer = Timer.builder("login.attempts.flush").register(meterRegistry);
+
+        String database = jdbcTemplate.execute(
+                (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        this.rollupSuffix = "H2".equalsIgnoreCase(database) ? H2_ROLLUP_SUFFIX : ROLLUP_SUFFIX;
+    }
+
+    /**
+     * Encola el intento sin tocar la BD. No bloquea nunca.
+     */
+    public void record(String email, String ipAddress, boolean successful, String failureReason) {
+        Attempt attempt = new Attempt(truncate(email, 100), truncate(ipAddress, 45), successful,
+                truncate(failureReason, 255), LocalDateTime.now());
+
+        if (attempt.email != null) {
+            recentByEmail.get(normalize(attempt.email), key -> new RecentAttempts(recentPerEmail)).add(attempt);
+        }
+
+        // Política de desbordamiento: con la cola llena se descarta el evento nuevo
+        if (queued.incrementAndGet() > queueCapacity) {
+            queued.decrementAndGet();
+            droppedCounter.increment();
+            return;
+        }
+        (successful ? pendingSuccessful : pendingFailed).incrementAndGet();
+        queue.offer(attempt);
+
+        if (queued.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            writer.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    /**
+     * Últimos intentos del email, más reciente primero. Si este nodo no los
+     * tiene en memoria (reinicio, otra instancia) se leen de la BD.
+     */
+    public List<LoginAttemptResponse> recentAttempts(String email) {
+        RecentAttempts recent = recentByEmail.getIfPresent(normalize(email));
+        List<LoginAttemptResponse> result = new ArrayList<>();
+        if (recent != null) {
+            for (Attempt attempt : recent.snapshot()) {
+                result.add(attempt.toResponse());
+            }
+            return result;
+        }
+        for (LoginAttempt attempt : loginAttemptRepository.findRecentAttemptsByEmail(email,
+                PageRequest.of(0, recentPerEmail))) {
+            result.add(new LoginAttemptResponse(attempt.getEmail(), attempt.getIpAddress(),
+                    Boolean.TRUE.equals(attempt.getSuccessful()), attempt.getFailureReason(),
+                    attempt.getAttemptTime()));
+        }
+        return result;
+    }
+
+    public long getPendingSuccessful() {
+        return pendingSuccessful.get();
+    }
+
+    public long getPendingFailed() {
+        return pendingFailed.get();
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.login-attempts.flush-interval:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Vacía la cola en lotes de batch-size, un INSERT multi-fila por lote
+     */
+    public synchronized void flush() {
+        List<Attempt> batch = new ArrayList<>(batchSize);
+        Attempt attempt;
+        while (true) {
+            while (batch.size() < batchSize && (attempt = queue.poll()) != null) {
+                queued.decrementAndGet();
+                batch.add(attempt);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.info("Intentos de login pendientes guardados antes de parar");
+    }
+
+    private void write(List<Attempt> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * 16).append(INSERT_PREFIX);
+        Object[] params = new Object[batch.size() * 5];
+        int p = 0;
+        long successful = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Attempt a = batch.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            params[p++] = a.email;
+            params[p++] = a.ipAddress;
+            params[p++] = a.successful;
+            params[p++] = a.failureReason;
+            params[p++] = Timestamp.valueOf(a.attemptTime);
+            if (a.successful) {
+                successful++;
+            }
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            // Filas y agregados en la misma transacción: los rollups nunca cuentan intentos perdidos
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update(sql.toString(), params);
+                upsertRollups(batch);
+            });
+            sample.stop(flushTimer);
+            writtenCounter.increment(batch.size());
+        } catch (RuntimeException e) {
+            // Sin reintentos: la memoria sigue acotada y el login no se ve afectado
+            failedCounter.increment(batch.size());
+            logger.error("Error guardando {} intentos de login", batch.size(), e);
+        } finally {
+            pendingSuccessful.addAndGet(-successful);
+            pendingFailed.addAndGet(-(batch.size() - successful));
+        }
+    }
+
+    /**
+     * Agrega el lote por hora y dimensión (total, IP, dominio del email) y lo
+     * suma a login_attempt_rollups con un único INSERT ... ON DUPLICATE KEY UPDATE
+     */
+    private void upsertRollups(List<Attempt> batch) {
+        Map<RollupKey, long[]> rollups = new TreeMap<>(ROLLUP_ORDER);
+        for (Attempt a : batch) {
+            LocalDateTime hour = a.attemptTime.truncatedTo(ChronoUnit.HOURS);
+            addRollup(rollups, new RollupKey(hour, RollupDimension.ALL, ""), a.successful);
+            if (a.ipAddress != null) {
+                addRollup(rollups, new RollupKey(hour, RollupDimension.IP, a.ipAddress), a.successful);
+            }
+            String domain = emailDomain(a.email);
+            if (domain != null) {
+                addRollup(rollups, new RollupKey(hour, RollupDimension.EMAIL_DOMAIN, domain), a.successful);
+            }
+        }
+
+        StringBuilder sql = new StringBuilder(ROLLUP_PREFIX.length() + rollupSuffix.length() + rollups.size() * 18)
+                .append(ROLLUP_PREFIX);
+        Object[] params = new Object[rollups.size() * 5];
+        int p = 0;
+        for (Map.Entry<RollupKey, long[]> entry : rollups.entrySet()) {
+            sql.append(p == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            params[p++] = Timestamp.valueOf(entry.getKey().hour());
+            params[p++] = entry.getKey().dimension().name();
+            params[p++] = entry.getKey().value();
+            params[p++] = entry.getValue()[0];
+            params[p++] = entry.getValue()[1];
+        }
+        sql.append(rollupSuffix);
+        jdbcTemplate.update(sql.toString(), params);
+    }
+
+    private static void addRollup(Map<RollupKey, long[]> rollups, RollupKey key, boolean successful) {
+        rollups.computeIfAbsent(key, k -> new long[2])[successful ? 0 : 1]++;
+    }
+
+    static String emailDomain(String email) {
+        if (email == null) {
+            return null;
+        }
+        int at = email.lastIndexOf('@');
+        return at >= 0 && at < email.length() - 1 ? normalize(email.substring(at + 1)) : null;
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record RollupKey(LocalDateTime hour, RollupDimension dimension, String value) {
+    }
+
+    private static final class Attempt {
+        final String email;
+        final String ipAddress;
+        final boolean successful;
+        final String failureReason;
+        final LocalDateTime attemptTime;
+
+        Attempt(String email, String ipAddress, boolean successful, String failureReason, LocalDateTime attemptTime) {
+            this.email = email;
+            this.ipAddress = ipAddress;
+            this.successful = successful;
+            this.failureReason = failureReason;
+            this.attemptTime = attemptTime;
+        }
+
+        LoginAttemptResponse toResponse() {
+            return new LoginAttemptResponse(email, ipAddress, successful, failureReason, attemptTime);
+        }
+    }
+
+    /**
+     * Buffer circular de tamaño fijo: cada add() ocupa la siguiente posición
+     */
+    private static final class RecentAttempts {
+        private final AtomicReferenceArray<Attempt> slots;
+        private final AtomicLong next = new AtomicLong();
+
+        RecentAttempts(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+        }
+
+        void add(Attempt attempt) {
+            slots.set((int) (next.getAndIncrement() % slots.length()), attempt);
+        }
+
+        List<Attempt> snapshot() {
+            long end = next.get();
+            List<Attempt> result = new ArrayList<>(slots.length());
+            for (long i = end - 1; i >= Math.max(0, end - slots.length()); i--) {
+                Attempt attempt = slots.get((int) (i % slots.length()));
+                if (attempt != null) {
+                    result.add(attempt);
+                }
+            }
+            return result;
+        }
+    }
+}
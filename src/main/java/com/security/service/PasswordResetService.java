@@ -2,8 +2,14 @@ package com.security.service;
 
 import com.security.entity.PasswordResetToken;
 import com.security.entity.User;
+import com.security.exception.ServiceBusyException;
 import com.security.repository.PasswordResetTokenRepository;
 import com.security.repository.UserRepository;
+import com.security.security.ExpiringCodeStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -11,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Base64;
 import java.util.Optional;
@@ -19,6 +26,8 @@ import java.util.Optional;
 @Transactional
 public class PasswordResetService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PasswordResetService.class);
+
     @Autowired
     private UserRepository userRepository;
 
@@ -31,15 +40,38 @@ public class PasswordResetService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${app.frontend.url:http://localhost:4200}")
     private String frontendUrl;
 
+    // Un email de reset por usuario cada request-interval (por nodo)
+    @Value("${app.security.password-reset.request-interval:60000}")
+    private long requestIntervalMs;
+
+    @Value("${app.security.password-reset.max-tracked-users:100000}")
+    private long maxTrackedUsers;
+
     private final SecureRandom secureRandom = new SecureRandom();
 
+    private ExpiringCodeStore<Long> recentRequests;
+
+    @PostConstruct
+    public void init() {
+        this.recentRequests = new ExpiringCodeStore<>("password-reset.recent-requests", maxTrackedUsers, 1,
+                meterRegistry);
+    }
+
     /**
      * Solicitar reset de contraseña
      */
     public boolean requestPasswordReset(String email) {
+        // Hueco del throttle ocupado por esta petición; se libera si no llega a enviarse el email
+        Long acquiredFor = null;
         try {
             // 1. Verificar si el usuario existe
             Optional<User> userOpt = userRepository.findByEmail(email);
@@ -52,6 +84,14 @@ public class PasswordResetService {
 
             User user = userOpt.get();
 
+            // El enlace anterior sigue siendo válido: no se genera otro ni se reenvía
+            if (!recentRequests.tryAcquire(user.getId(), Duration.ofMillis(requestIntervalMs))) {
+                logger.info("Reset solicitado de nuevo antes de {}s para: {}", recentRequests.secondsToExpiry(user.getId()),
+                        email);
+                return true;
+            }
+            acquiredFor = user.getId();
+
             // 2. Invalidar tokens anteriores del usuario
             passwordResetTokenRepository.deleteAllByUser(user);
 
@@ -69,6 +109,8 @@ public class PasswordResetService {
             } catch (Exception emailError) {
                 System.err.println(
                         "Token generado pero error enviando email para: " + email + " - " + emailError.getMessage());
+                // Sin email no hay enlace que esperar: se puede volver a pedir al momento
+                recentRequests.invalidate(acquiredFor);
             }
 
             return true;
@@ -76,6 +118,9 @@ public class PasswordResetService {
         } catch (Exception e) {
             System.err.println("Error al procesar solicitud de reset: " + e.getMessage());
             e.printStackTrace();
+            if (acquiredFor != null) {
+                recentRequests.invalidate(acquiredFor);
+            }
             return false;
         }
     }
@@ -148,6 +193,7 @@ public class PasswordResetService {
             // 4. Actualizar contraseña del usuario
             User user = resetToken.getUser();
             user.setPassword(passwordEncoder.encode(newPassword));
+            userService.invalidateIssuedTokens(user);
             userRepository.save(user);
 
             // 5. Marcar token como usado
@@ -167,6 +213,9 @@ public class PasswordResetService {
 
             return true;
 
+        } catch (ServiceBusyException e) {
+            // El token no se ha consumido: el usuario puede reintentar
+            throw e;
         } catch (Exception e) {
             System.err.println("Error al resetear contraseña: " + e.getMessage());
             e.printStackTrace();
@@ -186,6 +235,7 @@ public class PasswordResetService {
     /**
      * Obtener información del token (para debugging)
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserByToken(String token) {
         try {
             Optional<PasswordResetToken> resetTokenOpt = passwordResetTokenRepository.findByTokenAndUsedFalse(token);
@@ -216,6 +266,7 @@ public class PasswordResetService {
     /**
      * Contar tokens activos de un usuario
      */
+    @Transactional(readOnly = true)
     public long getActiveTokensCount(String email) {
         try {
             Optional<User> userOpt = userRepository.findByEmail(email);
@@ -0,0 +1,153 @@
+package com.security.service;
+
+import com.security.entity.RefreshToken;
+import com.security.entity.User;
+import com.security.exception.BadRequestException;
+import com.security.repository.RefreshTokenRepository;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Refresh tokens opacos. En BD solo se guarda su SHA-256; cada uso los rota y
+ * presentar uno ya rotado revoca toda la familia.
+ */
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshTokenService.class);
+
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Value("${app.security.jwt.refresh-expiration:604800000}")
+    private long refreshExpirationMs;
+
+    private static final SecureRandom secureRandom = new SecureRandom();
+
+    /**
+     * Resultado de una rotación: el usuario dueño y el nuevo refresh token
+     */
+    public static class Rotation {
+        private final User user;
+        private final String refreshToken;
+
+        public Rotation(User user, String refreshToken) {
+            this.user = user;
+            this.refreshToken = refreshToken;
+        }
+
+        public User getUser() {
+            return user;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+
+    /**
+     * Emite un refresh token que inicia una nueva familia (login)
+     */
+    public String createRefreshToken(User user) {
+        return issue(user, UUID.randomUUID().toString());
+    }
+
+    /**
+     * Valida el refresh token, lo marca como usado y devuelve uno nuevo de la
+     * misma familia. Es una única consulta indexada por el hash del token.
+     * Los borrados de familia deben persistir aunque se lance la excepción.
+     */
+    @Transactional(noRollbackFor = BadRequestException.class)
+    public Rotation rotate(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            throw new BadRequestException("Refresh token is required");
+        }
+
+        RefreshToken stored = refreshTokenRepository.findByTokenHashWithUser(hash(rawToken))
+                .orElseThrow(() -> new BadRequestException("Invalid refresh token"));
+
+        if (Boolean.TRUE.equals(stored.getRevoked())) {
+            throw reuseDetected(stored);
+        }
+
+        if (stored.isExpired()) {
+            refreshTokenRepository.delete(stored);
+            throw new BadRequestException("Refresh token expired");
+        }
+
+        User user = stored.getUser();
+        // Un bloqueo por intentos fallidos (locked_at) solo frena el login, no las sesiones abiertas
+        boolean manuallyLocked = !Boolean.TRUE.equals(user.getAccountNonLocked()) && user.getLockedAt() == null;
+        if (!user.isEnabled() || manuallyLocked) {
+            refreshTokenRepository.deleteByFamilyId(stored.getFamilyId());
+            throw new BadRequestException("User account is disabled or locked");
+        }
+
+        // UPDATE condicional: de dos presentaciones simultáneas solo una consume el token
+        if (refreshTokenRepository.markRevokedIfActive(stored.getId()) == 0) {
+            throw reuseDetected(stored);
+        }
+
+        return new Rotation(user, issue(user, stored.getFamilyId()));
+    }
+
+    // Un token ya rotado vuelve a usarse: se asume robado y se corta la familia
+    private BadRequestException reuseDetected(RefreshToken stored) {
+        refreshTokenRepository.deleteByFamilyId(stored.getFamilyId());
+        logger.warn("Reutilización de refresh token detectada para usuario: {}", stored.getUser().getEmail());
+        return new BadRequestException("Refresh token reuse detected. Please log in again.");
+    }
+
+    /**
+     * Revoca la familia completa del token (logout)
+     */
+    public void revoke(String rawToken) {
+        if (rawToken == null || rawToken.isBlank()) {
+            return;
+        }
+        Optional<RefreshToken> stored = refreshTokenRepository.findByToken(hash(rawToken));
+        stored.ifPresent(token -> refreshTokenRepository.deleteByFamilyId(token.getFamilyId()));
+    }
+
+    public void revokeAllForUser(Long userId) {
+        refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    public long getExpirationTime() {
+        return refreshExpirationMs / 1000;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.jwt.refresh-cleanup:3600000}")
+    public void cleanupExpiredTokens() {
+        refreshTokenRepository.deleteExpiredTokens(LocalDateTime.now());
+    }
+
+    private String issue(User user, String familyId) {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        String rawToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshToken refreshToken = new RefreshToken(hash(rawToken), user, familyId,
+                LocalDateTime.now().plusSeconds(refreshExpirationMs / 1000));
+        refreshTokenRepository.save(refreshToken);
+
+        return rawToken;
+    }
+
+    private String hash(String rawToken) {
+        return DigestUtils.sha256Hex(rawToken);
+    }
+}
@@ -0,0 +1,182 @@
+package com.security.service;
+
+import com.security.repository.ActiveSessionRepository;
+import com.security.repository.DeletedUserRepository;
+import com.security.repository.LoginAttemptRepository;
+import com.security.repository.LoginAttemptRollupRepository;
+import com.security.repository.TwoFactorTokenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Purga de retención de login_attempts (y sus agregados horarios), sesiones
+ * revocadas, tokens 2FA usados y lápidas de usuarios eliminados.
+ * Borra en lotes pequeños: SELECT de ids por el índice de tiempo y DELETE por
+ * PK, cada lote en su propia transacción corta y con una pausa entre lotes,
+ * para que la purga nunca retenga bloqueos largos sobre las tablas del login.
+ */
+@Service
+public class RetentionPurgeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RetentionPurgeService.class);
+
+    @Autowired
+    private LoginAttemptRepository loginAttemptRepository;
+
+    @Autowired
+    private LoginAttemptRollupRepository loginAttemptRollupRepository;
+
+    @Autowired
+    private ActiveSessionRepository activeSessionRepository;
+
+    @Autowired
+    private DeletedUserRepository deletedUserRepository;
+
+    @Autowired
+    private TwoFactorTokenRepository twoFactorTokenRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.retention.login-attempts-days:90}")
+    private int loginAttemptsDays;
+
+    // Los agregados ocupan poco y se conservan más que las filas de detalle
+    @Value("${app.retention.login-rollups-days:400}")
+    private int loginRollupsDays;
+
+    @Value("${app.retention.revoked-sessions-days:30}")
+    private int revokedSessionsDays;
+
+    @Value("${app.retention.used-two-factor-tokens-days:7}")
+    private int usedTwoFactorTokensDays;
+
+    // Las lápidas solo hacen falta mientras pueda quedar un access token vigente
+    @Value("${app.retention.deleted-users-days:1}")
+    private int deletedUsersDays;
+
+    @Value("${app.retention.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.retention.pause:200}")
+    private long pauseMs;
+
+    // Tiempo máximo por tabla y ejecución; lo que quede se borra en la siguiente
+    @Value("${app.retention.max-duration:600000}")
+    private long maxDurationMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${app.retention.cron:0 30 3 * * *}")
+    public void purgeAll() {
+        LocalDateTime now = LocalDateTime.now();
+
+        LocalDateTime attemptsCutoff = now.minusDays(loginAttemptsDays);
+        purge("login_attempts",
+                page -> loginAttemptRepository.findIdsByAttemptTimeBefore(attemptsCutoff, page),
+                loginAttemptRepository::deleteAllByIdInBatch);
+
+        LocalDateTime rollupsCutoff = now.minusDays(loginRollupsDays);
+        purge("login_attempt_rollups",
+                page -> loginAttemptRollupRepository.findIdsByBucketStartBefore(rollupsCutoff, page),
+                loginAttemptRollupRepository::deleteAllByIdInBatch);
+
+        LocalDateTime sessionsCutoff = now.minusDays(revokedSessionsDays);
+        purge("active_sessions",
+                page -> activeSessionRepository.findOldRevokedSessionIds(sessionsCutoff, page),
+                activeSessionRepository::deleteAllByIdInBatch);
+
+        LocalDateTime tokensCutoff = now.minusDays(usedTwoFactorTokensDays);
+        purge("two_factor_tokens",
+                page -> twoFactorTokenRepository.findOldUsedTokenIds(tokensCutoff, page),
+                twoFactorTokenRepository::deleteAllByIdInBatch);
+
+        LocalDateTime tombstonesCutoff = now.minusDays(deletedUsersDays);
+        purge("deleted_users",
+                page -> deletedUserRepository.findIdsByDeletedAtBefore(tombstonesCutoff, page),
+                deletedUserRepository::deleteAllByIdInBatch);
+    }
+
+    /**
+     * Borra lote a lote hasta vaciar el rango o agotar max-duration.
+     * Devuelve las filas purgadas.
+     */
+    long purge(String table, Function<Pageable, List<Long>> idsToPurge, Consumer<List<Long>> deleteByIds) {
+        Timer chunkTimer = Timer.builder("retention.purge.chunk").tag("table", table).register(meterRegistry);
+        Counter purgedCounter = Counter.builder("retention.purged").tag("table", table).register(meterRegistry);
+
+        long deadline = System.currentTimeMillis() + maxDurationMs;
+        long purged = 0;
+        long chunks = 0;
+        long lockNanos = 0;
+
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                Integer deleted = transactionTemplate.execute(status -> {
+                    List<Long> ids = idsToPurge.apply(PageRequest.of(0, chunkSize));
+                    if (!ids.isEmpty()) {
+                        deleteByIds.accept(ids);
+                    }
+                    return ids.size();
+                });
+                long elapsed = System.nanoTime() - start;
+
+                if (deleted == null || deleted == 0) {
+                    break;
+                }
+                // Duración de la transacción del lote = tiempo con las filas bloqueadas
+                chunkTimer.record(elapsed, TimeUnit.NANOSECONDS);
+                purgedCounter.increment(deleted);
+                lockNanos += elapsed;
+                purged += deleted;
+                chunks++;
+
+                if (deleted < chunkSize) {
+                    break;
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    logger.info("Purga de {} interrumpida por tiempo; continúa en la próxima ejecución", table);
+                    break;
+                }
+                Thread.sleep(pauseMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Error purgando {}", table, e);
+        }
+
+        if (purged > 0) {
+            logger.info("Retención {}: {} filas en {} lotes, {} ms en transacción", table, purged, chunks,
+                    TimeUnit.NANOSECONDS.toMillis(lockNanos));
+        }
+        return purged;
+    }
+}
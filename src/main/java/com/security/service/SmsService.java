@@ -3,6 +3,10 @@ package com.security.service;
 import com.security.entity.User;
 import com.security.entity.SmsVerificationCode;
 import com.security.repository.SmsVerificationCodeRepository;
+import com.security.security.ExpiringCodeStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -17,6 +21,7 @@ import org.apache.hc.core5.http.io.entity.StringEntity;
 import org.apache.hc.core5.http.ContentType;
 
 import java.security.SecureRandom;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Optional;
 
@@ -24,9 +29,14 @@ import java.util.Optional;
 @Transactional
 public class SmsService {
 
+    private static final Logger logger = LoggerFactory.getLogger(SmsService.class);
+
     @Autowired
     private SmsVerificationCodeRepository smsVerificationCodeRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Value("${app.notification.sms.project-id}")
     private String projectId;
 
@@ -42,11 +52,24 @@ public class SmsService {
     @Value("${app.notification.sms.dev-mode:false}")
     private boolean devMode;
 
+    @Value("${app.security.verification.sms.expiration:300000}")
+    private long codeTtlMs;
+
+    @Value("${app.security.verification.sms.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.security.verification.sms.max-tracked-users:100000}")
+    private long maxTrackedUsers;
+
+    // Fallos de verificación por usuario mientras vive el código enviado
+    private ExpiringCodeStore<Long> failedAttempts;
+
     private static final SecureRandom secureRandom = new SecureRandom();
     private static final String SINCH_SMS_URL = "https://sms.api.sinch.com/xms/v1/{project_id}/batches";
 
     @PostConstruct
     private void initialize() {
+        failedAttempts = new ExpiringCodeStore<>("sms.failed-attempts", maxTrackedUsers, maxAttempts, meterRegistry);
         System.out.println("🔧 Sinch SMS Service inicializado");
         System.out.println("📱 Modo desarrollo: " + devMode);
         System.out.println("📞 Número origen: " + fromNumber);
@@ -65,18 +88,20 @@ public class SmsService {
             smsCode.setUser(user);
             smsCode.setPhone(phoneNumber);
             smsCode.setCode(code);
-            smsCode.setExpiryDate(LocalDateTime.now().plusMinutes(5)); // 5 minutos de expiración
+            smsCode.setExpiryDate(LocalDateTime.now().plus(Duration.ofMillis(codeTtlMs)));
             smsCode.setUsed(false);
             smsCode.setAttempts(0);
 
             // Limpiar códigos anteriores no usados del mismo usuario y teléfono
             smsVerificationCodeRepository.deleteByUserAndPhoneAndUsedFalse(user, phoneNumber);
 
-            // Guardar nuevo código
+            // Guardar nuevo código; los intentos cuentan de nuevo
             smsVerificationCodeRepository.save(smsCode);
+            failedAttempts.invalidate(user.getId());
 
             // Enviar SMS
-            sendSms(phoneNumber, "Tu código de verificación es: " + code + ". Válido por 5 minutos.");
+            sendSms(phoneNumber, "Tu código de verificación es: " + code + ". Válido por "
+                    + Math.max(1, codeTtlMs / 60000) + " minutos.");
 
             System.out.println("✅ Código SMS enviado a " + phoneNumber + " para usuario: " + user.getEmail());
 
@@ -97,23 +122,40 @@ public class SmsService {
         sendVerificationCode(user, user.getPhone());
     }
 
+    /**
+     * Envía un código de login ya generado sin guardarlo: lo verifica el
+     * challenge 2FA que lo liga (TwoFactorChallengeCodec)
+     */
+    public void sendLoginCode(User user, String code) {
+        if (user.getPhone() == null || user.getPhone().trim().isEmpty()) {
+            throw new RuntimeException("El usuario no tiene un número de teléfono configurado");
+        }
+
+        sendSms(user.getPhone(), "Tu código de verificación es: " + code + ". Válido por "
+                + Math.max(1, codeTtlMs / 60000) + " minutos.");
+        logger.info("Código SMS de login enviado para usuario: {}", user.getEmail());
+    }
+
     /**
      * Verifica un código SMS
      */
     public boolean verifyCode(User user, String phone, String code) {
+        // Intentos agotados: ni siquiera se consulta la BD hasta que se pida otro código
+        if (failedAttempts.isExhausted(user.getId())) {
+            return false;
+        }
+
         Optional<SmsVerificationCode> smsCodeOpt = smsVerificationCodeRepository
                 .findValidCode(code, phone, LocalDateTime.now());
 
-        if (smsCodeOpt.isEmpty()) {
+        // El código debe existir y pertenecer al usuario correcto
+        if (smsCodeOpt.isEmpty() || !smsCodeOpt.get().getUser().getId().equals(user.getId())) {
+            recordFailedAttempt(user, phone);
             return false;
         }
 
         SmsVerificationCode smsCode = smsCodeOpt.get();
-
-        // Verificar que pertenece al usuario correcto
-        if (!smsCode.getUser().getId().equals(user.getId())) {
-            return false;
-        }
+        failedAttempts.invalidate(user.getId());
 
         // Marcar como usado
         smsCode.setUsed(true);
@@ -123,6 +165,15 @@ public class SmsService {
         return true;
     }
 
+    private void recordFailedAttempt(User user, String phone) {
+        int attempts = failedAttempts.recordAttempt(user.getId(), Duration.ofMillis(codeTtlMs));
+        if (attempts >= maxAttempts) {
+            // Se invalida el código pendiente: hay que solicitar uno nuevo
+            smsVerificationCodeRepository.deleteByUserAndPhoneAndUsedFalse(user, phone);
+            logger.warn("Código SMS invalidado tras {} intentos fallidos: {}", attempts, user.getEmail());
+        }
+    }
+
     /**
      * Verifica código para login 2FA usando el teléfono guardado del usuario
      */
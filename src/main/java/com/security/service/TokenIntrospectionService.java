@@ -0,0 +1,108 @@
+package com.security.service;
+
+import com.security.dto.response.TokenIntrospectionResponse;
+import com.security.dto.response.TokenIntrospectionResponse.Status;
+import com.security.security.SecurityVersionTable;
+import com.security.security.TokenRevocationList;
+import com.security.security.VerifiedToken;
+import com.security.security.VerifiedTokenCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Introspección de access tokens para gateways y servicios internos. Todo se
+ * resuelve en memoria (caché de verificación, lista de revocación y tabla de
+ * versiones), sin consultas a la BD.
+ */
+@Service
+public class TokenIntrospectionService {
+
+    // Por debajo de este tamaño no compensa repartir el lote entre hilos
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
+    @Autowired
+    private SecurityVersionTable securityVersionTable;
+
+    @Value("${app.security.jwt.introspection.max-age:5}")
+    private long maxAgeSeconds;
+
+    @Value("${app.security.jwt.introspection.client-secret:}")
+    private String clientSecret;
+
+    /**
+     * Solo gateways y servicios internos con el secreto compartido pueden
+     * introspectar; sin secreto configurado el endpoint queda cerrado
+     */
+    public boolean isTrustedClient(String presentedSecret) {
+        if (clientSecret == null || clientSecret.isBlank() || presentedSecret == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(clientSecret.getBytes(StandardCharsets.UTF_8),
+                presentedSecret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public TokenIntrospectionResponse introspect(String token) {
+        if (token == null || token.isBlank()) {
+            return new TokenIntrospectionResponse(Status.INVALID);
+        }
+
+        VerifiedToken verified = verifiedTokenCache.getOrVerify(token);
+        if (!verified.isValid()) {
+            return new TokenIntrospectionResponse(
+                    verified.getFailureReason() == VerifiedToken.FailureReason.EXPIRED
+                            ? Status.EXPIRED
+                            : Status.INVALID);
+        }
+
+        if (tokenRevocationList.isRevoked(verified.getTokenId())
+                || !securityVersionTable.isCurrent(verified.getUserId(), verified.getSecurityVersion())) {
+            return new TokenIntrospectionResponse(Status.REVOKED);
+        }
+
+        TokenIntrospectionResponse response = new TokenIntrospectionResponse(Status.ACTIVE);
+        response.setSub(verified.getUserId());
+        response.setEmail(verified.getEmail());
+        response.setRoles(verified.getRoles());
+        if (verified.getExpiration() != null) {
+            response.setExp(verified.getExpiration().getTime() / 1000);
+        }
+        return response;
+    }
+
+    /**
+     * Verifica el lote en paralelo; el orden de la respuesta es el de la petición
+     */
+    public List<TokenIntrospectionResponse> introspectAll(List<String> tokens) {
+        if (tokens.size() < PARALLEL_THRESHOLD) {
+            return tokens.stream().map(this::introspect).collect(Collectors.toList());
+        }
+        return tokens.parallelStream().map(this::introspect).collect(Collectors.toList());
+    }
+
+    /**
+     * Segundos que un resultado puede cachearse: nunca más allá del micro-caché
+     * configurado ni del exp del token activo más próximo a expirar
+     */
+    public long getCacheMaxAge(List<TokenIntrospectionResponse> results) {
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        long maxAge = maxAgeSeconds;
+        for (TokenIntrospectionResponse result : results) {
+            if (result.isActive() && result.getExp() != null) {
+                maxAge = Math.min(maxAge, result.getExp() - nowSeconds);
+            }
+        }
+        return Math.max(0, maxAge);
+    }
+}
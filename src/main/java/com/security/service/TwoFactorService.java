@@ -2,24 +2,35 @@ package com.security.service;
 
 import com.security.entity.User;
 import com.security.enums.TwoFactorType;
+import com.security.exception.BadRequestException;
+import com.security.exception.TooManyRequestsException;
+import com.security.repository.UserRepository;
+import com.security.security.ExpiringCodeStore;
+import com.security.security.LoginThrottle;
+import com.security.security.TwoFactorChallenge;
+import com.security.security.TwoFactorChallengeCodec;
+import com.security.security.UserPrincipalCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
-import java.time.LocalDateTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.security.entity.User;
-import com.security.repository.UserRepository;
-
-import com.security.repository.UserRepository;
-
 @Service
 @Transactional
 public class TwoFactorService {
 
+    private static final Logger logger = LoggerFactory.getLogger(TwoFactorService.class);
+
     @Autowired
     private UserService userService;
 
@@ -35,12 +46,68 @@ public class TwoFactorService {
     @Autowired
     private SmsService smsService;
 
-    // Cache temporal para códigos de email/SMS (en producción usar Redis)
-    private final Map<Long, String> emailCodes = new HashMap<>();
-    private final Map<Long, LocalDateTime> emailCodeExpiry = new HashMap<>();
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TwoFactorChallengeCodec challengeCodec;
+
+    @Autowired
+    private LoginThrottle loginThrottle;
+
+    @Value("${app.security.two-factor.email-code.ttl:300000}")
+    private long emailCodeTtlMs;
+
+    @Value("${app.security.two-factor.email-code.max-attempts:5}")
+    private int emailCodeMaxAttempts;
+
+    @Value("${app.security.two-factor.email-code.max-pending:100000}")
+    private long maxPendingEmailCodes;
+
+    // Límite por nodo, no global: ver app.security.two-factor.challenge en application.yml
+    @Value("${app.security.two-factor.challenge.max-attempts:5}")
+    private int challengeMaxAttempts;
+
+    // Envíos de código (SMS/email cuestan dinero): por challenge y por usuario en una ventana
+    @Value("${app.security.two-factor.challenge.max-sends:3}")
+    private int challengeMaxSends;
+
+    @Value("${app.security.two-factor.challenge.max-sends-per-user:10}")
+    private int userMaxSends;
+
+    @Value("${app.security.two-factor.challenge.sends-window:3600000}")
+    private long userSendsWindowMs;
+
+    // Códigos de email pendientes por usuario (por nodo): TTL e intentos por código
+    private ExpiringCodeStore<Long> emailCodes;
+
+    // Por id de challenge, en este nodo: fallos, envíos y challenges ya canjeados
+    private ExpiringCodeStore<String> challengeFailures;
+    private ExpiringCodeStore<String> challengeSends;
+    private ExpiringCodeStore<String> redeemedChallenges;
+
+    // Envíos por usuario en la ventana, sumando todos sus challenges
+    private ExpiringCodeStore<Long> userSends;
 
     private static final SecureRandom secureRandom = new SecureRandom();
 
+    @PostConstruct
+    public void init() {
+        this.emailCodes = new ExpiringCodeStore<>("two-factor.email-codes", maxPendingEmailCodes,
+                emailCodeMaxAttempts, meterRegistry);
+        this.challengeFailures = new ExpiringCodeStore<>("two-factor.challenge-failures", maxPendingEmailCodes,
+                challengeMaxAttempts, meterRegistry);
+        this.challengeSends = new ExpiringCodeStore<>("two-factor.challenge-sends", maxPendingEmailCodes,
+                challengeMaxSends, meterRegistry);
+        this.redeemedChallenges = new ExpiringCodeStore<>("two-factor.redeemed-challenges", maxPendingEmailCodes,
+                1, meterRegistry);
+        this.userSends = new ExpiringCodeStore<>("two-factor.user-sends", maxPendingEmailCodes, userMaxSends,
+                meterRegistry);
+    }
+
     // ===== GOOGLE AUTHENTICATOR (TOTP) =====
 
     public String enableGoogleAuthenticator(Long userId) {
@@ -62,6 +129,7 @@ public class TwoFactorService {
         return secret;
     }
 
+    @Transactional(readOnly = true)
     public String generateQRCode(Long userId) {
         User user = userService.getUserById(userId);
 
@@ -105,38 +173,149 @@ public class TwoFactorService {
         // Generate 6-digit code
         String code = String.format("%06d", secureRandom.nextInt(1000000));
 
-        // Store with expiry (5 minutes)
-        emailCodes.put(userId, code);
-        emailCodeExpiry.put(userId, LocalDateTime.now().plusMinutes(5));
+        // Store with expiry (ttl configurable, 5 minutes by default)
+        emailCodes.put(userId, code, Duration.ofMillis(emailCodeTtlMs));
 
         // Send email
         emailService.send2FACodeEmail(user, code);
     }
 
     public boolean verifyEmailCode(Long userId, String code) {
-        String storedCode = emailCodes.get(userId);
-        LocalDateTime expiry = emailCodeExpiry.get(userId);
+        // Un acierto consume el código; agotar los intentos también lo descarta
+        ExpiringCodeStore.Result result = emailCodes.verify(userId, code);
+        if (result == ExpiringCodeStore.Result.TOO_MANY_ATTEMPTS) {
+            logger.warn("Código 2FA por email descartado tras demasiados intentos, usuario: {}", userId);
+        }
+        return result == ExpiringCodeStore.Result.VALID;
+    }
 
-        if (storedCode == null || expiry == null) {
-            return false;
+    // ===== CHALLENGES DE LOGIN (SIN ESTADO) =====
+
+    /**
+     * Challenge que devuelve el login cuando falta el segundo factor
+     */
+    public String issueLoginChallenge(User user) {
+        // Mismo criterio que el login: solo se pide segundo factor con Google Authenticator activo
+        return challengeCodec.issue(user.getId(), TwoFactorType.GOOGLE_AUTHENTICATOR, user.getSecurityVersion());
+    }
+
+    /**
+     * Envía un código por EMAIL o SMS y devuelve el mismo challenge (id y caducidad)
+     * con su HMAC ligado. El código no se guarda en ningún sitio. Antes de enviar se
+     * consultan el limitador de login y los límites de envíos por challenge y usuario.
+     */
+    @Transactional(readOnly = true)
+    public String sendChallengeCode(String challengeToken, String method, String clientIp) {
+        TwoFactorChallenge challenge = openChallenge(challengeToken);
+        User user = userService.getUserById(challenge.getUserId());
+        checkSecurityVersion(challenge, user);
+        TwoFactorType type = parseMethod(method);
+        if (type == TwoFactorType.EMAIL) {
+            if (!Boolean.TRUE.equals(user.getEmailEnabled())) {
+                throw new BadRequestException("Email 2FA is not enabled for this user");
+            }
+        } else if (type == TwoFactorType.SMS) {
+            if (!Boolean.TRUE.equals(user.getSmsEnabled())) {
+                throw new BadRequestException("SMS 2FA is not enabled for this user");
+            }
+        } else {
+            throw new BadRequestException("Invalid method. Supported: SMS, EMAIL");
         }
 
-        if (LocalDateTime.now().isAfter(expiry)) {
-            // Cleanup expired
-            emailCodes.remove(userId);
-            emailCodeExpiry.remove(userId);
-            return false;
+        loginThrottle.checkAllowed(user.getEmail(), clientIp);
+        Duration remaining = Duration.between(Instant.now(), challenge.getExpiresAt());
+        if (challengeSends.recordAttempt(challenge.getId(), remaining) > challengeMaxSends) {
+            throw new TooManyRequestsException("Demasiados códigos enviados. Inicia sesión de nuevo.",
+                    Math.max(1, remaining.toSeconds()));
+        }
+        if (userSends.recordAttempt(user.getId(), Duration.ofMillis(userSendsWindowMs)) > userMaxSends) {
+            throw new TooManyRequestsException("Demasiados códigos enviados. Inténtalo más tarde.",
+                    userSends.secondsToExpiry(user.getId()));
         }
 
-        boolean isValid = storedCode.equals(code);
+        String code = String.format("%06d", secureRandom.nextInt(1000000));
+        if (type == TwoFactorType.EMAIL) {
+            emailService.send2FACodeEmail(user, code);
+        } else {
+            smsService.sendLoginCode(user, code);
+        }
+        return challengeCodec.issueWithCode(challenge, type, code);
+    }
 
-        if (isValid) {
-            // Cleanup after successful verification
-            emailCodes.remove(userId);
-            emailCodeExpiry.remove(userId);
+    /**
+     * Completa el login con el challenge y el código. Devuelve el usuario (con
+     * roles) si el código es correcto, null si no. Los fallos cuentan en el
+     * limitador de login por email e IP y por challenge en este nodo.
+     */
+    public User verifyChallenge(String challengeToken, String method, String code, String clientIp) {
+        TwoFactorChallenge challenge = openChallenge(challengeToken);
+        if (method != null && !challenge.getMethod().name().equals(method)) {
+            throw new BadRequestException("Verification method does not match the challenge");
+        }
+        User user = userService.getCredentialsById(challenge.getUserId());
+        checkSecurityVersion(challenge, user);
+
+        loginThrottle.checkAllowed(user.getEmail(), clientIp);
+        if (challengeFailures.isExhausted(challenge.getId())) {
+            throw new TooManyRequestsException("Demasiados intentos fallidos. Inicia sesión de nuevo.",
+                    Math.max(1, Duration.between(Instant.now(), challenge.getExpiresAt()).toSeconds()));
+        }
+
+        boolean isValid;
+        switch (challenge.getMethod()) {
+            case GOOGLE_AUTHENTICATOR:
+                isValid = Boolean.TRUE.equals(user.getGoogleAuthEnabled())
+                        && totpService.verifyCode(user.getGoogleAuthSecret(), code);
+                break;
+            case EMAIL:
+            case SMS:
+                if (!challenge.hasCode()) {
+                    throw new BadRequestException("Request a verification code first");
+                }
+                isValid = challengeCodec.matchesCode(challenge, code);
+                break;
+            default:
+                isValid = false;
         }
 
-        return isValid;
+        Duration remaining = Duration.between(Instant.now(), challenge.getExpiresAt());
+        if (!isValid) {
+            challengeFailures.recordAttempt(challenge.getId(), remaining);
+            if (loginThrottle.recordFailure(user.getEmail(), clientIp)) {
+                userService.lockAccount(user.getId());
+            }
+            return null;
+        }
+
+        // Cada challenge completa un solo login (en este nodo; en otros caduca con su TTL)
+        if (!redeemedChallenges.tryAcquire(challenge.getId(), remaining)) {
+            throw new BadRequestException("Two-factor challenge already used");
+        }
+        loginThrottle.recordSuccess(user.getEmail());
+        return user;
+    }
+
+    private TwoFactorChallenge openChallenge(String challengeToken) {
+        TwoFactorChallenge challenge = challengeCodec.open(challengeToken);
+        if (challenge == null) {
+            throw new BadRequestException("Invalid or expired two-factor challenge. Please log in again.");
+        }
+        return challenge;
+    }
+
+    // Cambio de contraseña o tokens invalidados después del login: el challenge ya no vale
+    private void checkSecurityVersion(TwoFactorChallenge challenge, User user) {
+        if (challenge.getSecurityVersion() != user.getSecurityVersion()) {
+            throw new BadRequestException("Invalid or expired two-factor challenge. Please log in again.");
+        }
+    }
+
+    private TwoFactorType parseMethod(String method) {
+        try {
+            return TwoFactorType.valueOf(method);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new BadRequestException("Invalid method. Supported: SMS, EMAIL");
+        }
     }
 
     // ===== SMS 2FA =====
@@ -241,8 +420,7 @@ public class TwoFactorService {
         userService.save(user);
 
         // Cleanup any pending codes
-        emailCodes.remove(userId);
-        emailCodeExpiry.remove(userId);
+        emailCodes.invalidate(userId);
 
         // Cleanup SMS codes
         smsService.cleanupExpiredCodes();
@@ -257,8 +435,7 @@ public class TwoFactorService {
     public String generateToken(Long userId) {
         // Generate 6-digit token for email 2FA
         String token = String.format("%06d", secureRandom.nextInt(1000000));
-        emailCodes.put(userId, token);
-        emailCodeExpiry.put(userId, LocalDateTime.now().plusMinutes(5));
+        emailCodes.put(userId, token, Duration.ofMillis(emailCodeTtlMs));
         return token;
     }
 
@@ -282,11 +459,13 @@ public class TwoFactorService {
 
         // Guardar cambios
         userRepository.save(user);
+        userPrincipalCache.invalidate(user);
 
         // Log para debugging
         System.out.println("Email 2FA enabled for user: " + user.getEmail());
     }
 
+    @Transactional(readOnly = true)
     public String getQRCodeUrl(Long userId, String issuer) {
         User user = userService.getUserById(userId);
         if (user.getGoogleAuthSecret() == null) {
@@ -297,13 +476,8 @@ public class TwoFactorService {
     }
 
     public void cleanupExpiredTokens() {
-        LocalDateTime now = LocalDateTime.now();
-        emailCodes.entrySet().removeIf(entry -> {
-            Long userId = entry.getKey();
-            LocalDateTime expiry = emailCodeExpiry.get(userId);
-            return expiry == null || now.isAfter(expiry);
-        });
-        emailCodeExpiry.entrySet().removeIf(entry -> now.isAfter(entry.getValue()));
+        // La caducidad va por entrada en el store; esto solo adelanta el mantenimiento pendiente
+        emailCodes.cleanUp();
     }
 
     public void cleanupOldUsedTokens() {
@@ -340,8 +514,7 @@ public class TwoFactorService {
                     user.setEmailEnabled(false);
                     wasDisabled = true;
                     // Limpiar códigos pendientes
-                    emailCodes.remove(userId);
-                    emailCodeExpiry.remove(userId);
+                    emailCodes.invalidate(userId);
                 }
                 break;
             default:
@@ -373,6 +546,7 @@ public class TwoFactorService {
     /**
      * Obtener métodos 2FA disponibles para el usuario
      */
+    @Transactional(readOnly = true)
     public Map<String, Boolean> getAvailableTwoFactorMethods(Long userId) {
         User user = userService.getUserById(userId);
         Map<String, Boolean> methods = new HashMap<>();
@@ -0,0 +1,290 @@
+package com.security.service;
+
+import com.security.dto.response.UserSearchResult;
+import com.security.entity.User;
+import com.security.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Búsqueda de usuarios sobre un índice de prefijos en memoria (email, nombre y
+ * apellidos normalizados, sin acentos). Sustituye al LIKE '%term%' sobre la
+ * tabla: cada término es un subMap() del índice ordenado. Se mantiene al día
+ * con las altas, cambios y bajas, y se reconstruye periódicamente desde la BD
+ * para recoger lo hecho por otras instancias.
+ */
+@Service
+public class UserSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchService.class);
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int LOAD_BATCH_SIZE = 5000;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+
+    // Candidatos por término como máximo: acota el coste de prefijos de 1-2 letras
+    private static final int MAX_CANDIDATES_PER_TERM = 10000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private volatile Index index = new Index();
+
+    // Cambios recibidos mientras se reconstruye; se aplican sobre el índice nuevo
+    private volatile List<Consumer<Index>> pendingDuringRebuild;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+        logger.info("Índice de búsqueda de usuarios cargado: {} usuarios", index.documents.size());
+    }
+
+    @Scheduled(fixedDelayString = "${app.search.rebuild-interval:3600000}",
+            initialDelayString = "${app.search.rebuild-interval:3600000}")
+    public synchronized void rebuild() {
+        List<Consumer<Index>> pending = Collections.synchronizedList(new ArrayList<>());
+        pendingDuringRebuild = pending;
+        try {
+            Index fresh = new Index();
+            Long afterId = 0L;
+            while (true) {
+                List<Object[]> rows = userRepository.findSearchEntriesAfter(afterId,
+                        PageRequest.of(0, LOAD_BATCH_SIZE));
+                for (Object[] row : rows) {
+                    fresh.put(new Document((Long) row[0], (String) row[1], (String) row[2], (String) row[3]));
+                }
+                if (rows.size() < LOAD_BATCH_SIZE) {
+                    break;
+                }
+                afterId = (Long) rows.get(rows.size() - 1)[0];
+            }
+
+            synchronized (pending) {
+                for (Consumer<Index> change : pending) {
+                    change.accept(fresh);
+                }
+                // A partir de aquí los cambios van directamente al índice nuevo
+                index = fresh;
+                pendingDuringRebuild = null;
+            }
+        } catch (RuntimeException e) {
+            pendingDuringRebuild = null;
+            logger.error("Error reconstruyendo el índice de búsqueda", e);
+            throw e;
+        }
+    }
+
+    /**
+     * Indexa (o reindexa) el usuario cuando la transacción actual confirma
+     */
+    public void indexAfterCommit(User user) {
+        Document document = new Document(user.getId(), user.getEmail(), user.getFirstName(), user.getLastName());
+        afterCommit(() -> apply(idx -> idx.put(document)));
+    }
+
+    public void removeAfterCommit(Long userId) {
+        afterCommit(() -> apply(idx -> idx.remove(userId)));
+    }
+
+    /**
+     * Búsqueda ordenada por relevancia: todos los términos deben coincidir con
+     * el principio de alguna palabra del email o del nombre
+     */
+    public Page<UserSearchResult> search(String query, int page, int size) {
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        page = Math.max(0, page);
+
+        List<UserSearchResult> ranked = rank(query);
+        int from = Math.min(page * size, ranked.size());
+        int to = Math.min(from + size, ranked.size());
+        return new PageImpl<>(ranked.subList(from, to), PageRequest.of(page, size), ranked.size());
+    }
+
+    /**
+     * Type-ahead: los mejores resultados, sin paginación
+     */
+    public List<UserSearchResult> suggest(String query, int limit) {
+        List<UserSearchResult> ranked = rank(query);
+        return ranked.subList(0, Math.min(Math.max(1, Math.min(limit, MAX_SUGGESTIONS)), ranked.size()));
+    }
+
+    private List<UserSearchResult> rank(String query) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Index current = index;
+        Map<Long, Integer> scores = null;
+        for (String term : terms) {
+            Map<Long, Integer> termScores = current.match(term);
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                // Intersección: el usuario debe coincidir con todos los términos
+                Map<Long, Integer> combined = new HashMap<>();
+                for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+                    Integer termScore = termScores.get(entry.getKey());
+                    if (termScore != null) {
+                        combined.put(entry.getKey(), entry.getValue() + termScore);
+                    }
+                }
+                scores = combined;
+            }
+            if (scores.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+
+        List<UserSearchResult> results = new ArrayList<>(scores.size());
+        for (Map.Entry<Long, Integer> entry : scores.entrySet()) {
+            Document document = current.documents.get(entry.getKey());
+            if (document != null) {
+                results.add(new UserSearchResult(document.id, document.email, document.firstName,
+                        document.lastName, entry.getValue()));
+            }
+        }
+        results.sort(Comparator.comparingInt(UserSearchResult::getScore).reversed()
+                .thenComparing(UserSearchResult::getId, Comparator.reverseOrder()));
+        return results;
+    }
+
+    private void apply(Consumer<Index> change) {
+        List<Consumer<Index>> pending = pendingDuringRebuild;
+        if (pending != null) {
+            synchronized (pending) {
+                if (pendingDuringRebuild == pending) {
+                    pending.add(change);
+                }
+            }
+        }
+        change.accept(index);
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static final class Document {
+        final Long id;
+        final String email;
+        final String firstName;
+        final String lastName;
+        final Set<String> tokens;
+
+        Document(Long id, String email, String firstName, String lastName) {
+            this.id = id;
+            this.email = email;
+            this.firstName = firstName;
+            this.lastName = lastName;
+
+            Set<String> tokens = new LinkedHashSet<>();
+            if (email != null) {
+                // El email completo permite buscar "juan.perez@" tal cual
+                tokens.add(email.toLowerCase(Locale.ROOT));
+                tokens.addAll(tokenize(email));
+            }
+            tokens.addAll(tokenize(firstName));
+            tokens.addAll(tokenize(lastName));
+            this.tokens = tokens;
+        }
+    }
+
+    private static final class Index {
+        // token -> ids de usuario que lo contienen
+        final ConcurrentSkipListMap<String, Set<Long>> postings = new ConcurrentSkipListMap<>();
+        final Map<Long, Document> documents = new ConcurrentHashMap<>();
+
+        void put(Document document) {
+            remove(document.id);
+            documents.put(document.id, document);
+            for (String token : document.tokens) {
+                postings.computeIfAbsent(token, key -> ConcurrentHashMap.newKeySet()).add(document.id);
+            }
+        }
+
+        void remove(Long id) {
+            Document previous = documents.remove(id);
+            if (previous == null) {
+                return;
+            }
+            for (String token : previous.tokens) {
+                postings.computeIfPresent(token, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+
+        /**
+         * Puntuación por usuario para un término: palabra exacta 3, prefijo 1
+         */
+        Map<Long, Integer> match(String term) {
+            Map<Long, Integer> scores = new HashMap<>();
+            NavigableMap<String, Set<Long>> range = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+            for (Map.Entry<String, Set<Long>> entry : range.entrySet()) {
+                int score = entry.getKey().equals(term) ? 3 : 1;
+                for (Long id : entry.getValue()) {
+                    scores.merge(id, score, Math::max);
+                }
+                if (scores.size() >= MAX_CANDIDATES_PER_TERM) {
+                    break;
+                }
+            }
+            return scores;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.security.service;
 
 import com.security.dto.request.RegisterRequest;
+import com.security.dto.request.UserFilterRequest;
+import com.security.dto.response.CursorPage;
 import com.security.dto.response.UserResponse;
+import com.security.entity.DeletedUser;
 import com.security.entity.Role;
 import com.security.entity.User;
 ///agregue
@@ -13,35 +16,56 @@ import com.security.enums.TokenType;
 
 import com.security.exception.ResourceNotFoundException;
 import com.security.exception.BadRequestException;
+import com.security.exception.ServiceBusyException;
+import com.security.repository.DeletedUserRepository;
 import com.security.repository.RoleRepository;
 import com.security.repository.UserRepository;
 //esto
 import com.security.repository.VerificationTokenRepository;
-
+import com.security.repository.projection.TwoFactorStatus;
+import com.security.repository.projection.UserSummary;
+import com.security.security.RoleCatalog;
+import com.security.security.SecurityVersionTable;
+import com.security.security.UserPrincipalCache;
+import com.security.security.VerifiedTokenCache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     @Autowired
     private UserRepository userRepository;
 
     @Autowired
     private RoleRepository roleRepository;
 
+    @Autowired
+    private DeletedUserRepository deletedUserRepository;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
@@ -50,6 +74,30 @@ public class UserService {
     @Autowired
     private VerificationTokenRepository verificationTokenRepository;
 
+    @Autowired
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @Autowired
+    private SecurityVersionTable securityVersionTable;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
+    @Autowired
+    private RoleCatalog roleCatalog;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private UserStatistics userStatistics;
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 200;
+
     public User createUser(RegisterRequest registerRequest) {
         if (userRepository.existsByEmail(registerRequest.getEmail())) {
             throw new BadRequestException("Email address already in use!");
@@ -67,13 +115,18 @@ public class UserService {
         user.setAccountNonLocked(true);
         user.setCredentialsNonExpired(true);
 
-        Role userRole = roleRepository.findByName(RoleName.ROLE_USER)
-                .orElseThrow(() -> new RuntimeException("User Role not set."));
+        Role userRole = roleCatalog.getRole(RoleName.ROLE_USER);
+        if (userRole == null) {
+            throw new RuntimeException("User Role not set.");
+        }
 
-        user.setRoles(Collections.singleton(userRole));
+        // Referencia por id: no hace falta volver a consultar el rol
+        user.setRoles(Collections.singleton(roleRepository.getReferenceById(userRole.getId())));
 
         // Guardar usuario primero
         User savedUser = userRepository.save(user);
+        userSearchService.indexAfterCommit(savedUser);
+        userStatistics.recordRoleChange(Collections.emptySet(), EnumSet.of(RoleName.ROLE_USER));
 
         // Crear y guardar token de verificación
         String tokenValue = generateVerificationToken();
@@ -119,6 +172,7 @@ public class UserService {
         user.setEnabled(true);
         user.setUpdatedAt(LocalDateTime.now());
         userRepository.save(user);
+        userPrincipalCache.invalidate(user);
 
         // Marcar token como usado
         verificationTokenRepository.markTokenAsUsed(verificationToken.getId());
@@ -164,24 +218,113 @@ public class UserService {
 
     ///////////////////////
 
+    @Transactional(readOnly = true)
     public User getUserById(Long userId) {
         return userRepository.findById(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
     }
 
+    /**
+     * Usuario con sus roles cargados en la misma consulta
+     */
+    @Transactional(readOnly = true)
+    public User getUserWithRolesById(Long userId) {
+        return userRepository.findWithRolesById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    }
+
+    // Búsquedas del flujo de login: siempre en el primario (sin readOnly) y sin la caché de segundo nivel
+    public Optional<User> findByEmailWithRoles(String email) {
+        return userRepository.findCredentialsByEmail(email);
+    }
+
+    public User getCredentialsById(Long userId) {
+        return userRepository.findCredentialsById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    }
+
+    @Transactional(readOnly = true)
+    public TwoFactorStatus getTwoFactorStatus(Long userId) {
+        return userRepository.findTwoFactorStatusById(userId)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", userId));
+    }
+
+    @Transactional(readOnly = true)
     public User getUserByEmail(String email) {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "email", email));
     }
 
+    @Transactional(readOnly = true)
     public UserResponse getUserResponseById(Long userId) {
-        User user = getUserById(userId);
+        User user = getUserWithRolesById(userId);
         return convertToUserResponse(user);
     }
 
+    /**
+     * Página de usuarios con dos consultas fijas (proyección + roles de la
+     * página), sin importar el tamaño de la página
+     */
+    @Transactional(readOnly = true)
     public Page<UserResponse> getAllUsers(Pageable pageable) {
-        Page<User> users = userRepository.findAll(pageable);
-        return users.map(this::convertToUserResponse);
+        Page<UserSummary> summaries = userRepository.findAllSummaries(pageable);
+        Map<Long, Set<RoleName>> rolesByUser = findRolesByUser(summaries.getContent());
+        return summaries.map(summary -> convertToUserResponse(summary,
+                rolesByUser.getOrDefault(summary.id(), Collections.emptySet())));
+    }
+
+    /**
+     * Listado de administración por keyset: cada página cuesta lo mismo que la
+     * primera porque se busca por índice desde el último id, sin OFFSET
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<UserResponse> listUsers(UserFilterRequest filter) {
+        int size = filter.getSize() == null ? DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(filter.getSize(), MAX_PAGE_SIZE));
+
+        // Se pide uno de más para saber si hay página siguiente
+        List<UserSummary> summaries = userRepository.findSummariesAfter(filter.getEnabled(),
+                filter.getTwoFactorType(), filter.getRole(), filter.getCreatedFrom(), filter.getCreatedTo(),
+                filter.getCursor(), size + 1);
+
+        boolean hasMore = summaries.size() > size;
+        if (hasMore) {
+            summaries = summaries.subList(0, size);
+        }
+
+        Map<Long, Set<RoleName>> rolesByUser = findRolesByUser(summaries);
+        List<UserResponse> items = new ArrayList<>(summaries.size());
+        for (UserSummary summary : summaries) {
+            items.add(convertToUserResponse(summary, rolesByUser.getOrDefault(summary.id(), Collections.emptySet())));
+        }
+
+        Long nextCursor = hasMore ? summaries.get(summaries.size() - 1).id() : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    private Set<RoleName> findRolesByUserId(Long userId) {
+        Set<RoleName> roles = EnumSet.noneOf(RoleName.class);
+        for (Object[] row : userRepository.findRoleNamesByUserIds(Collections.singletonList(userId))) {
+            roles.add((RoleName) row[1]);
+        }
+        return roles;
+    }
+
+    // Roles de todos los usuarios de una página en una sola consulta
+    private Map<Long, Set<RoleName>> findRolesByUser(List<UserSummary> summaries) {
+        Map<Long, Set<RoleName>> rolesByUser = new HashMap<>();
+        if (summaries.isEmpty()) {
+            return rolesByUser;
+        }
+
+        List<Long> ids = new ArrayList<>(summaries.size());
+        for (UserSummary summary : summaries) {
+            ids.add(summary.id());
+        }
+        for (Object[] row : userRepository.findRoleNamesByUserIds(ids)) {
+            rolesByUser.computeIfAbsent((Long) row[0], id -> EnumSet.noneOf(RoleName.class)).add((RoleName) row[1]);
+        }
+        return rolesByUser;
     }
 
     public User updateUser(Long userId, User updatedUser) {
@@ -198,18 +341,31 @@ public class UserService {
         }
 
         user.setUpdatedAt(LocalDateTime.now());
+        userPrincipalCache.invalidate(user);
+        userSearchService.indexAfterCommit(user);
         return userRepository.save(user);
     }
 
     public void deleteUser(Long userId) {
         User user = getUserById(userId);
+        Set<RoleName> roles = findRolesByUserId(userId);
         userRepository.delete(user);
+        userStatistics.recordRoleChange(roles, Collections.emptySet());
+        // Lápida para que las demás instancias también rechacen sus tokens
+        deletedUserRepository.save(new DeletedUser(userId, LocalDateTime.now()));
+        securityVersionTable.revoke(userId);
+        afterCommit(() -> {
+            verifiedTokenCache.invalidateUser(userId);
+            userPrincipalCache.invalidate(user);
+        });
+        userSearchService.removeAfterCommit(userId);
     }
 
     public void enableUser(Long userId) {
         User user = getUserById(userId);
         user.setEnabled(true);
         user.setUpdatedAt(LocalDateTime.now());
+        userPrincipalCache.invalidate(user);
         userRepository.save(user);
     }
 
@@ -217,6 +373,7 @@ public class UserService {
         User user = getUserById(userId);
         user.setEnabled(false);
         user.setUpdatedAt(LocalDateTime.now());
+        invalidateIssuedTokens(user);
         userRepository.save(user);
     }
 
@@ -225,14 +382,104 @@ public class UserService {
         user.setPassword(passwordEncoder.encode(newPassword));
         user.setCredentialsNonExpired(true);
         user.setUpdatedAt(LocalDateTime.now());
+        invalidateIssuedTokens(user);
         userRepository.save(user);
     }
 
+    /**
+     * Bloqueo temporal por exceso de intentos fallidos. No hay tarea que lo
+     * levante: LoginThrottle.isLocked() lo da por caducado pasado lockout-duration
+     * y el siguiente login correcto lo limpia (unlockAccount). Solo frena nuevos
+     * logins: cualquiera que conozca el email puede provocarlo, así que no
+     * revoca los JWT ni los refresh tokens ya emitidos.
+     */
+    public void lockAccount(Long userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null || !Boolean.TRUE.equals(user.getAccountNonLocked())) {
+            return;
+        }
+        user.setAccountNonLocked(false);
+        user.setLockedAt(LocalDateTime.now());
+        userRepository.save(user);
+        userPrincipalCache.invalidate(user);
+        logger.warn("Cuenta bloqueada por intentos fallidos: {}", user.getEmail());
+    }
+
+    /**
+     * Levanta un bloqueo por intentos fallidos (los manuales, sin locked_at, se mantienen)
+     */
+    public void unlockAccount(Long userId) {
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null || Boolean.TRUE.equals(user.getAccountNonLocked()) || user.getLockedAt() == null) {
+            return;
+        }
+        user.setAccountNonLocked(true);
+        user.setLockedAt(null);
+        userRepository.save(user);
+        userPrincipalCache.invalidate(user);
+    }
+
+    /**
+     * Rehash transparente tras un login correcto: si el hash guardado usa un
+     * coste o algoritmo anterior al actual se sustituye por uno nuevo.
+     */
+    public void upgradePasswordIfNeeded(User user, String rawPassword) {
+        if (!passwordEncoder.upgradeEncoding(user.getPassword())) {
+            return;
+        }
+        String upgraded;
+        try {
+            upgraded = passwordEncoder.encode(rawPassword);
+        } catch (ServiceBusyException e) {
+            // Pool de hashing saturado: no penaliza el login, se reintenta en el próximo
+            return;
+        }
+        // Sobre la fila actual, y solo si la contraseña no ha cambiado entretanto
+        User current = userRepository.findById(user.getId()).orElse(null);
+        if (current == null || !current.getPassword().equals(user.getPassword())) {
+            return;
+        }
+        current.setPassword(upgraded);
+        userRepository.save(current);
+        userPrincipalCache.invalidate(current);
+    }
+
+    /**
+     * Sube la versión de seguridad del usuario para que los JWT ya emitidos
+     * dejen de ser aceptados, y elimina sus refresh tokens. La tabla de
+     * versiones y las cachés se tocan al confirmar: si la transacción se
+     * deshace no cambian, y una petición concurrente no puede volver a
+     * cachear la versión anterior antes del commit.
+     */
+    public void invalidateIssuedTokens(User user) {
+        int version = user.bumpSecurityVersion();
+        refreshTokenService.revokeAllForUser(user.getId());
+        afterCommit(() -> {
+            securityVersionTable.update(user.getId(), version);
+            verifiedTokenCache.invalidateUser(user.getId());
+            userPrincipalCache.invalidate(user);
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
     public void enableTwoFactor(Long userId, String secret) {
         User user = getUserById(userId);
         user.setTwoFactorEnabled(true);
         user.setTwoFactorSecret(secret);
         user.setUpdatedAt(LocalDateTime.now());
+        userPrincipalCache.invalidate(user);
         userRepository.save(user);
     }
 
@@ -241,9 +488,11 @@ public class UserService {
         user.setTwoFactorEnabled(false);
         user.setTwoFactorSecret(null);
         user.setUpdatedAt(LocalDateTime.now());
+        userPrincipalCache.invalidate(user);
         userRepository.save(user);
     }
 
+    @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
         return userRepository.existsByEmail(email);
     }
@@ -254,10 +503,30 @@ public class UserService {
     }
 
     // Método para guardar usuario (lo necesita VerificationService)
+    // Invalida la caché de principals: lo usan los toggles de 2FA
     public User save(User user) {
+        userPrincipalCache.invalidate(user);
         return userRepository.save(user);
     }
 
+    public UserResponse convertToUserResponse(UserSummary summary, Set<RoleName> roles) {
+        UserResponse userResponse = new UserResponse();
+        userResponse.setId(summary.id());
+        userResponse.setFirstName(summary.firstName());
+        userResponse.setLastName(summary.lastName());
+        userResponse.setEmail(summary.email());
+        userResponse.setPhone(summary.phone());
+        userResponse.setEnabled(summary.enabled());
+        userResponse.setGoogleAuthEnabled(summary.googleAuthEnabled());
+        userResponse.setSmsEnabled(summary.smsEnabled());
+        userResponse.setEmailEnabled(summary.emailEnabled());
+        userResponse.setTwoFactorEnabled(Boolean.TRUE.equals(summary.twoFactorEnabled()));
+        userResponse.setCreatedAt(summary.createdAt());
+        userResponse.setUpdatedAt(summary.updatedAt());
+        userResponse.setRoles(RoleCatalog.roleNamesOfEnums(roles));
+        return userResponse;
+    }
+
     public UserResponse convertToUserResponse(User user) {
         UserResponse userResponse = new UserResponse();
         userResponse.setId(user.getId());
@@ -272,11 +541,7 @@ public class UserService {
         userResponse.setCreatedAt(user.getCreatedAt());
         userResponse.setUpdatedAt(user.getUpdatedAt());
 
-        // CORREGIDO: Usar enum name()
-        Set<String> roleNames = user.getRoles().stream()
-                .map(role -> role.getName().name())
-                .collect(Collectors.toSet());
-        userResponse.setRoles(roleNames);
+        userResponse.setRoles(RoleCatalog.roleNamesOf(user.getRoles()));
 
         // <-- AGREGA ESTA LÍNEA
         userResponse.setGoogleAuthEnabled(user.getGoogleAuthEnabled());
@@ -0,0 +1,238 @@
+package com.security.service;
+
+import com.security.enums.RoleName;
+import com.security.enums.RollupDimension;
+import com.security.repository.LoginAttemptRollupRepository;
+import com.security.repository.UserRepository;
+import com.security.repository.projection.HourlyLoginOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de usuarios en memoria, expuestos en /actuator/userstats. Se
+ * mantienen con los eventos que los cambian (UserStatisticsListener, los
+ * cambios de roles de UserService y los logins) y se reconcilian periódicamente con la BD (users y los agregados de login),
+ * así que leerlos no cuesta ningún COUNT.
+ */
+@Component
+@Endpoint(id = "userstats")
+public class UserStatistics {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserStatistics.class);
+
+    // Días de logins que se conservan en memoria
+    private static final int LOGIN_DAYS = 30;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private LoginAttemptRollupRepository loginAttemptRollupRepository;
+
+    @Autowired
+    private LoginAttemptRecorder loginAttemptRecorder;
+
+    private final AtomicLong totalUsers = new AtomicLong();
+    private final AtomicLong enabledUsers = new AtomicLong();
+    private final AtomicLong twoFactorUsers = new AtomicLong();
+    private final Map<RoleName, AtomicLong> usersByRole = new EnumMap<>(RoleName.class);
+
+    private final Map<LocalDate, DailyLogins> loginsByDay = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime lastReconciledAt;
+
+    public UserStatistics() {
+        // Todas las claves existen desde el principio: el EnumMap solo se lee
+        for (RoleName name : RoleName.values()) {
+            usersByRole.put(name, new AtomicLong());
+        }
+    }
+
+    private static final class DailyLogins {
+        final LongAdder successful = new LongAdder();
+        final LongAdder failed = new LongAdder();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reconcile();
+        logger.info("Estadísticas de usuarios cargadas: {} usuarios", totalUsers.get());
+    }
+
+    /**
+     * Sustituye los contadores por los valores reales de la BD (corrige cambios
+     * hechos por otras instancias o fuera de la aplicación)
+     */
+    @Scheduled(fixedDelayString = "${app.statistics.reconcile-interval:300000}",
+            initialDelayString = "${app.statistics.reconcile-interval:300000}")
+    public void reconcile() {
+        List<Object[]> totals = userRepository.countUserStatistics();
+        if (!totals.isEmpty()) {
+            Object[] row = totals.get(0);
+            totalUsers.set(toLong(row[0]));
+            enabledUsers.set(toLong(row[1]));
+            twoFactorUsers.set(toLong(row[2]));
+        }
+
+        Map<RoleName, Long> roleCounts = new EnumMap<>(RoleName.class);
+        for (Object[] row : userRepository.countUsersGroupedByRole()) {
+            roleCounts.put((RoleName) row[0], toLong(row[1]));
+        }
+        for (RoleName name : RoleName.values()) {
+            usersByRole.get(name).set(roleCounts.getOrDefault(name, 0L));
+        }
+
+        LocalDate oldest = LocalDate.now().minusDays(LOGIN_DAYS);
+        loginsByDay.keySet().removeIf(day -> day.isBefore(oldest));
+        reconcileLogins(oldest);
+        lastReconciledAt = LocalDateTime.now();
+    }
+
+    /**
+     * Logins por día: los agregados horarios ya escritos (todas las instancias)
+     * más lo que este nodo tiene encolado y aún no ha escrito
+     */
+    private void reconcileLogins(LocalDate oldest) {
+        Map<LocalDate, long[]> counts = new HashMap<>();
+        for (HourlyLoginOutcome hour : loginAttemptRollupRepository.findHourly(RollupDimension.ALL, "",
+                oldest.atStartOfDay(), LocalDate.now().plusDays(1).atStartOfDay())) {
+            long[] day = counts.computeIfAbsent(hour.hour().toLocalDate(), key -> new long[2]);
+            day[0] += hour.successful();
+            day[1] += hour.failed();
+        }
+        long[] today = counts.computeIfAbsent(LocalDate.now(), key -> new long[2]);
+        today[0] += loginAttemptRecorder.getPendingSuccessful();
+        today[1] += loginAttemptRecorder.getPendingFailed();
+
+        counts.forEach((date, values) -> {
+            DailyLogins day = loginsByDay.computeIfAbsent(date, key -> new DailyLogins());
+            day.successful.reset();
+            day.successful.add(values[0]);
+            day.failed.reset();
+            day.failed.add(values[1]);
+        });
+    }
+
+    public void applyDelta(long total, long enabled, long twoFactor, Map<RoleName, Integer> roles) {
+        totalUsers.addAndGet(total);
+        enabledUsers.addAndGet(enabled);
+        twoFactorUsers.addAndGet(twoFactor);
+        roles.forEach((name, delta) -> usersByRole.get(name).addAndGet(delta));
+    }
+
+    /**
+     * Igual que applyDelta, pero si hay transacción solo cuenta tras su commit
+     */
+    public void applyAfterCommit(long total, long enabled, long twoFactor, Map<RoleName, Integer> roles) {
+        if (total == 0 && enabled == 0 && twoFactor == 0 && roles.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyDelta(total, enabled, twoFactor, roles);
+                }
+            });
+        } else {
+            applyDelta(total, enabled, twoFactor, roles);
+        }
+    }
+
+    /**
+     * Roles de un usuario antes y después de un cambio. Lo llaman los métodos
+     * de servicio que asignan o quitan roles: el listener de la entidad no puede
+     * compararlos porque la colección es LAZY.
+     */
+    public void recordRoleChange(Set<RoleName> before, Set<RoleName> after) {
+        Map<RoleName, Integer> delta = new EnumMap<>(RoleName.class);
+        for (RoleName name : after) {
+            if (!before.contains(name)) {
+                delta.put(name, 1);
+            }
+        }
+        for (RoleName name : before) {
+            if (!after.contains(name)) {
+                delta.put(name, -1);
+            }
+        }
+        applyAfterCommit(0, 0, 0, delta.isEmpty() ? Collections.emptyMap() : delta);
+    }
+
+    public void recordLogin(boolean successful) {
+        DailyLogins day = loginsByDay.computeIfAbsent(LocalDate.now(), key -> new DailyLogins());
+        (successful ? day.successful : day.failed).increment();
+    }
+
+    public long getTotalUsers() {
+        return totalUsers.get();
+    }
+
+    public long getEnabledUsers() {
+        return enabledUsers.get();
+    }
+
+    public long getTwoFactorUsers() {
+        return twoFactorUsers.get();
+    }
+
+    public long getUsersWithRole(RoleName name) {
+        return usersByRole.get(name).get();
+    }
+
+    public long getLogins(LocalDate day, boolean successful) {
+        DailyLogins logins = loginsByDay.get(day);
+        if (logins == null) {
+            return 0;
+        }
+        return (successful ? logins.successful : logins.failed).sum();
+    }
+
+    @ReadOperation
+    public Map<String, Object> statistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalUsers", totalUsers.get());
+        stats.put("enabledUsers", enabledUsers.get());
+        stats.put("disabledUsers", totalUsers.get() - enabledUsers.get());
+        stats.put("twoFactorUsers", twoFactorUsers.get());
+
+        Map<String, Long> roles = new LinkedHashMap<>();
+        usersByRole.forEach((name, count) -> roles.put(name.name(), count.get()));
+        stats.put("usersByRole", roles);
+
+        LocalDate today = LocalDate.now();
+        Map<String, Long> logins = new LinkedHashMap<>();
+        logins.put("successful", getLogins(today, true));
+        logins.put("failed", getLogins(today, false));
+        stats.put("loginsToday", logins);
+
+        stats.put("lastReconciledAt", lastReconciledAt);
+        return stats;
+    }
+
+    private long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0L;
+    }
+}
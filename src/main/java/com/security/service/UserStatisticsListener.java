@@ -0,0 +1,79 @@
+package com.security.service;
+
+import com.security.entity.User;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PreRemove;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import java.util.Collections;
+
+/**
+ * Traduce los cambios de cada User en deltas para UserStatistics. Al cargar se
+ * guarda lo que ya está contado; al escribir se compara con el estado nuevo y
+ * el delta se aplica tras el commit. Los roles no pasan por aquí (son LAZY y
+ * casi nunca están cargados): los cuenta UserService donde los cambia.
+ */
+public class UserStatisticsListener {
+
+    // @Lazy: el listener lo crea Hibernate mientras se construye el EntityManagerFactory
+    @Autowired
+    @Lazy
+    private UserStatistics userStatistics;
+
+    /**
+     * Estado de un usuario tal como está reflejado en los contadores
+     */
+    public static final class Snapshot {
+        final boolean enabled;
+        final boolean twoFactorEnabled;
+
+        Snapshot(boolean enabled, boolean twoFactorEnabled) {
+            this.enabled = enabled;
+            this.twoFactorEnabled = twoFactorEnabled;
+        }
+    }
+
+    @PostLoad
+    public void onLoad(User user) {
+        user.setStatisticsSnapshot(snapshot(user));
+    }
+
+    @PostPersist
+    public void onPersist(User user) {
+        Snapshot current = snapshot(user);
+        user.setStatisticsSnapshot(current);
+        userStatistics.applyAfterCommit(1, current.enabled ? 1 : 0, current.twoFactorEnabled ? 1 : 0,
+                Collections.emptyMap());
+    }
+
+    @PostUpdate
+    public void onUpdate(User user) {
+        Snapshot previous = user.getStatisticsSnapshot();
+        Snapshot current = snapshot(user);
+        user.setStatisticsSnapshot(current);
+        if (previous == null) {
+            return;
+        }
+
+        userStatistics.applyAfterCommit(0, delta(previous.enabled, current.enabled),
+                delta(previous.twoFactorEnabled, current.twoFactorEnabled), Collections.emptyMap());
+    }
+
+    @PreRemove
+    public void onRemove(User user) {
+        Snapshot previous = user.getStatisticsSnapshot() != null ? user.getStatisticsSnapshot() : snapshot(user);
+        userStatistics.applyAfterCommit(-1, previous.enabled ? -1 : 0, previous.twoFactorEnabled ? -1 : 0,
+                Collections.emptyMap());
+    }
+
+    private Snapshot snapshot(User user) {
+        return new Snapshot(user.isEnabled(), Boolean.TRUE.equals(user.getTwoFactorEnabled()));
+    }
+
+    private int delta(boolean before, boolean after) {
+        return before == after ? 0 : (after ? 1 : -1);
+    }
+}
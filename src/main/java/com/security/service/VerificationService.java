@@ -100,6 +100,7 @@ public class VerificationService {
         System.out.println("🧹 Tokens expirados eliminados");
     }
 
+    @Transactional(readOnly = true)
     public boolean hasValidVerificationToken(User user) {
         return verificationTokenRepository.countActiveTokensByUserId(user.getId(), LocalDateTime.now()) > 0;
     }
@@ -0,0 +1,92 @@
+package com.security.benchmark;
+
+import com.security.security.JwtKeyRing;
+import com.security.security.JwtTokenProvider;
+import com.security.security.VerifiedToken;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de autenticar una petición con un JWT HS512: el camino anterior
+ * (validateToken + getUserIdFromJWT, cada uno con su parserBuilder y su HMAC)
+ * frente a verifyToken (parser compartido, una sola verificación de firma).
+ * Con -prof gc (lo añade el perfil benchmarks) se ven también los bytes
+ * asignados por operación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtVerificationBenchmark {
+
+    private static final String SECRET =
+            "benchmarkSecret1234567890123456789012345678901234567890123456789012345678901234567890";
+
+    private SecretKey key;
+    private JwtTokenProvider tokenProvider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+
+        // Anillo en modo HS512: no carga claves de la BD
+        JwtKeyRing keyRing = new JwtKeyRing();
+        ReflectionTestUtils.setField(keyRing, "algorithm", "HS512");
+
+        tokenProvider = new JwtTokenProvider();
+        ReflectionTestUtils.setField(tokenProvider, "keyRing", keyRing);
+        ReflectionTestUtils.setField(tokenProvider, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(tokenProvider, "hs512AcceptedUntil", "");
+        ReflectionTestUtils.setField(tokenProvider, "jwtExpirationInMs", 900000);
+        tokenProvider.init();
+
+        token = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("42")
+                .claim("email", "bench@example.com")
+                .claim("roles", Set.of("ROLE_USER"))
+                .claim("ver", 0)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)))
+                .signWith(key, SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    /**
+     * Lo que hacía el filtro antes: dos parsers nuevos y dos HMAC por petición
+     */
+    @Benchmark
+    public Long legacyValidateThenExtract() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        return Long.parseLong(claims.getSubject());
+    }
+
+    @Benchmark
+    public VerifiedToken verifyOnce() {
+        return tokenProvider.verifyToken(token);
+    }
+}
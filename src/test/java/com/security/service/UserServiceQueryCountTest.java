@@ -0,0 +1,193 @@
+package com.security.service;
+
+import com.security.dto.request.UserFilterRequest;
+import com.security.dto.response.CursorPage;
+import com.security.dto.response.UserResponse;
+import com.security.entity.Role;
+import com.security.entity.User;
+import com.security.enums.RoleName;
+import com.security.security.CustomUserDetailsService;
+import com.security.security.RoleCatalog;
+import com.security.security.SecurityVersionTable;
+import com.security.security.UserPrincipal;
+import com.security.security.UserPrincipalCache;
+import com.security.security.VerifiedTokenCache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Número de sentencias de los caminos de lectura de usuarios, medido desde los
+ * servicios que los usan: listado de administración (página + count + roles, o
+ * página + roles por keyset) sea cual sea el tamaño de página, y usuario con
+ * roles para autenticación y perfil en una sola sentencia. Una regresión al
+ * N+1 (roles cargados usuario a usuario) rompe estas cuentas.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        // Sin caché de segundo nivel: cada sentencia cuenta
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ UserService.class, CustomUserDetailsService.class })
+class UserServiceQueryCountTest {
+
+    private static final int USERS = 30;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    // Colaboradores de UserService que no leen usuarios
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockBean
+    private EmailService emailService;
+
+    @MockBean
+    private VerifiedTokenCache verifiedTokenCache;
+
+    @MockBean
+    private SecurityVersionTable securityVersionTable;
+
+    @MockBean
+    private RefreshTokenService refreshTokenService;
+
+    @MockBean
+    private RoleCatalog roleCatalog;
+
+    @MockBean
+    private UserSearchService userSearchService;
+
+    // También la usa UserStatisticsListener, fuera del contexto de @DataJpaTest
+    @MockBean
+    private UserStatistics userStatistics;
+
+    // Sin caché: cada llamada ejecuta el loader y sus sentencias
+    @MockBean
+    private UserPrincipalCache userPrincipalCache;
+
+    private Statistics statistics;
+    private Long adminId;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        Role userRole = entityManager.persist(new Role(RoleName.ROLE_USER));
+        Role adminRole = entityManager.persist(new Role(RoleName.ROLE_ADMIN));
+        for (int i = 0; i < USERS; i++) {
+            User user = new User("First" + i, "Last" + i, "user" + i + "@example.com", "password");
+            user.getRoles().add(userRole);
+            if (i % 3 == 0) {
+                user.getRoles().add(adminRole);
+            }
+            entityManager.persist(user);
+            if (i == 0) {
+                adminId = user.getId();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        when(userPrincipalCache.getByEmail(anyString(), any())).thenAnswer(invocation -> ((Function<String, UserPrincipal>) invocation
+                .getArgument(1)).apply(invocation.getArgument(0)));
+        when(userPrincipalCache.getById(anyLong(), any())).thenAnswer(invocation -> ((Function<Long, UserPrincipal>) invocation
+                .getArgument(1)).apply(invocation.getArgument(0)));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getAllUsersRunsThreeStatementsWhateverThePageSize() {
+        for (int size : new int[] { 5, 20 }) {
+            statistics.clear();
+
+            Page<UserResponse> page = userService.getAllUsers(PageRequest.of(0, size));
+
+            assertThat(page.getContent()).hasSize(size);
+            assertThat(page.getTotalElements()).isEqualTo(USERS);
+            assertThat(page.getContent()).allSatisfy(user -> assertThat(user.getRoles()).contains("ROLE_USER"));
+            assertThat(statistics.getPrepareStatementCount())
+                    .as("page + count + roles for a page of %d", size)
+                    .isEqualTo(3);
+            assertThat(statistics.getEntityLoadCount()).isZero();
+            assertThat(statistics.getCollectionFetchCount()).isZero();
+        }
+    }
+
+    @Test
+    void listUsersRunsTwoStatementsWhateverThePageSize() {
+        for (int size : new int[] { 5, 20 }) {
+            statistics.clear();
+
+            UserFilterRequest filter = new UserFilterRequest();
+            filter.setSize(size);
+            CursorPage<UserResponse> page = userService.listUsers(filter);
+
+            assertThat(page.getItems()).hasSize(size);
+            assertThat(page.isHasMore()).isTrue();
+            assertThat(page.getItems()).allSatisfy(user -> assertThat(user.getRoles()).contains("ROLE_USER"));
+            assertThat(statistics.getPrepareStatementCount())
+                    .as("page + roles for a page of %d", size)
+                    .isEqualTo(2);
+            assertThat(statistics.getEntityLoadCount()).isZero();
+        }
+    }
+
+    @Test
+    void loadUserByUsernameLoadsUserAndRolesInOneStatement() {
+        UserDetails details = userDetailsService.loadUserByUsername("user0@example.com");
+
+        assertThat(details.getAuthorities()).extracting(Object::toString)
+                .containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void loginCredentialsLoadUserAndRolesInOneStatement() {
+        User user = userService.findByEmailWithRoles("user0@example.com").orElseThrow();
+
+        assertThat(user.getRoles()).hasSize(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void profileLoadsUserAndRolesInOneStatement() {
+        UserResponse profile = userService.getUserResponseById(adminId);
+
+        assertThat(profile.getRoles()).containsExactlyInAnyOrder("ROLE_USER", "ROLE_ADMIN");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+}